@@ -0,0 +1,46 @@
+package jigglyslimes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times parsing a complete config file, as happens on every hot reload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConfigBenchmark {
+
+    private String configText;
+
+    @Setup
+    public void setUp() {
+        final StringWriter text = new StringWriter();
+        try(PrintWriter wr = new PrintWriter(text)) {
+            JSConfig.writeConfig(wr);
+        }
+        configText = text.toString();
+    }
+
+    @Benchmark
+    public Object loadConfig() {
+        JSConfig.loadConfig(new StringReader(configText));
+        return JSConfig.getPhysicsParams();
+    }
+}
@@ -0,0 +1,62 @@
+package jigglyslimes.model;
+
+import com.mojang.blaze3d.vertex.IVertexBuilder;
+
+/**
+ * Counts the vertices it is given and folds their attributes into a checksum, so that the work producing them cannot
+ * be optimized away, without storing anything.
+ */
+public class CountingVertexBuilder implements IVertexBuilder {
+
+    public int vertices;
+    public float checksum;
+
+    public void reset() {
+        vertices = 0;
+        checksum = 0.0F;
+    }
+
+    @Override
+    public void addVertex(float x, float y, float z, float red, float green, float blue, float alpha, float texU, float texV, int overlayUV, int lightmapUV, float normalX, float normalY, float normalZ) {
+        vertices++;
+        checksum += x + y + z + texU + texV + normalX + normalY + normalZ;
+    }
+
+    @Override
+    public IVertexBuilder pos(double x, double y, double z) {
+        checksum += (float) (x + y + z);
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder color(int red, int green, int blue, int alpha) {
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder tex(float u, float v) {
+        checksum += u + v;
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder overlay(int u, int v) {
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder lightmap(int u, int v) {
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder normal(float x, float y, float z) {
+        checksum += x + y + z;
+        return this;
+    }
+
+    @Override
+    public void endVertex() {
+        vertices++;
+    }
+}
@@ -0,0 +1,117 @@
+package jigglyslimes.model;
+
+import com.mojang.blaze3d.matrix.MatrixStack;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.vector.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times deforming a slime's outer body and emitting its vertices at each mesh resolution, without a GPU or a client,
+ * both through a generic {@code IVertexBuilder} and packed into a {@link VertexStream}. With a tolerance, flat faces are
+ * drawn coarser and the faces around them stitched on with fans, so the body is timed both at rest and twisted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MeshBenchmark {
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"})
+    public int meshResolution;
+
+    @Param({"false", "true"})
+    public boolean smoothShading;
+
+    @Param({"0", "0.005"})
+    public float tolerance;
+
+    @Param({"REST", "TWISTED"})
+    public Shape shape;
+
+    private BoxMesh mesh;
+    private final BoxMesh.Deformation deformation = new BoxMesh.Deformation();
+    private MatrixStack.Entry matrixEntry;
+    private final Vector3f[] corners = new Vector3f[8];
+    private final CountingVertexBuilder vertexBuilder = new CountingVertexBuilder();
+    private final VertexStream vertexStream = new VertexStream();
+
+    @Setup
+    public void setUp() {
+        // The same box as a slime's outer body
+        mesh = new BoxMesh(new Vector3f(0.0F, 0.0F, 0.0F), new Vector3f(1.0F, 1.0F, 1.0F), 0, 0, 8, 8, 8, meshResolution, 64, 32, tolerance);
+
+        final MatrixStack matrixStack = new MatrixStack();
+        matrixStack.translate(2.0, -1.0, 5.0);
+        matrixStack.scale(-1.0F, -1.0F, 1.0F);
+        matrixEntry = matrixStack.getLast();
+        shape.setCorners(corners);
+    }
+
+    @Benchmark
+    public CountingVertexBuilder render() {
+        vertexBuilder.reset();
+        mesh.render(matrixEntry, vertexBuilder, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, corners);
+        return vertexBuilder;
+    }
+
+    /**
+     * The same, but packing the vertices into a {@link VertexStream} as the renderer does.
+     */
+    @Benchmark
+    public VertexStream renderToStream() {
+        vertexStream.reset();
+        mesh.render(matrixEntry, vertexStream, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, corners);
+        return vertexStream;
+    }
+
+    /**
+     * The same, but deforming the box once and drawing it from the deformation, as the renderer does for each pass.
+     */
+    @Benchmark
+    public CountingVertexBuilder renderDeformed() {
+        vertexBuilder.reset();
+        mesh.deform(deformation, corners);
+        mesh.render(matrixEntry, vertexBuilder, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, deformation);
+        return vertexBuilder;
+    }
+
+    /**
+     * The model corners of a size 2 slime.
+     */
+    public enum Shape {
+        /** At rest, so every face is flat. */
+        REST,
+        /** Squashed slightly, with its top turned against its bottom so that every side face is twisted. */
+        TWISTED;
+
+        void setCorners(Vector3f[] corners) {
+            for(int i = 0; i < 8; i++) {
+                final boolean top = (i & 0x02) != 0;
+                float x = (i & 0x04) == 0 ? -0.51F : 0.51F;
+                float z = (i & 0x01) == 0 ? -0.51F : 0.51F;
+                if(this == TWISTED && top) {
+                    final float angle = 0.4F;
+                    final float turnedX = x * MathHelper.cos(angle) - z * MathHelper.sin(angle);
+                    z = x * MathHelper.sin(angle) + z * MathHelper.cos(angle);
+                    x = turnedX;
+                }
+                corners[i] = new Vector3f(x, top ? 1.02F : 0.0F, z);
+                if(this == TWISTED) corners[i].add(0.03F * (i % 3), -0.02F * (i % 2) - (top ? 0.07F : 0.0F), 0.01F * i);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package jigglyslimes.model;
+
+import com.mojang.blaze3d.matrix.MatrixStack;
+import com.sun.management.ThreadMXBean;
+import net.minecraft.util.math.vector.Vector3f;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks promises the meshes make that the benchmarks can only measure, failing if any of them no longer holds. Each
+ * check counts exactly, so the results do not depend on timing or on a profiler. Run with {@code gradlew meshCheck},
+ * which {@code gradlew test} also runs; the benchmarks themselves only run when asked for, with {@code gradlew jmh}.
+ */
+public final class MeshChecks {
+
+    /** The number of renders allocations are counted over, after as many again to fill each thread's scratch. */
+    private static final int RENDERS = 1000;
+    /** Drawing a slime should allocate nothing; this only leaves room for reading the allocation counter itself. */
+    private static final double MAX_RENDER_BYTES = 1.0;
+    /**
+     * A new model keeps a few references per resolution level; anything stored per vertex would instead add megabytes
+     * at the highest resolution.
+     */
+    private static final long MAX_FOOTPRINT_GROWTH = 8192;
+
+    private MeshChecks() {}
+
+    public static void main(String[] args) {
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot count the memory allocated by a thread");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final List<String> failures = new ArrayList<>();
+        checkTriangleCounts(failures);
+        checkRenderAllocations(threads, failures);
+        checkFootprint(threads, failures);
+        if(!failures.isEmpty()) {
+            throw new IllegalStateException(failures.size() + " mesh check(s) failed:\n  " + String.join("\n  ", failures));
+        }
+    }
+
+    /**
+     * Draws a slime's outer body, at rest and twisted, at every resolution reduction and with and without a tolerance,
+     * and checks that it emits exactly the triangles it counts. With a tolerance a box at rest is drawn with two
+     * triangles per face at any resolution, and without one it is drawn at the full resolution of the reduction.
+     */
+    private static void checkTriangleCounts(List<String> failures) {
+        final int maxResolution = 4;
+        final MatrixStack.Entry matrixEntry = new MatrixStack().getLast();
+        final Vector3f[] corners = new Vector3f[8];
+        final BoxMesh.Deformation deformation = new BoxMesh.Deformation();
+        final CountingVertexBuilder vertexBuilder = new CountingVertexBuilder();
+        for(float tolerance : new float[] {0.0F, 0.005F}) {
+            final BoxMesh mesh = new BoxMesh(new Vector3f(0.0F, 0.0F, 0.0F), new Vector3f(1.0F, 1.0F, 1.0F), 0, 0, 8, 8, 8, maxResolution, 64, 32, tolerance);
+            for(MeshBenchmark.Shape shape : MeshBenchmark.Shape.values()) {
+                shape.setCorners(corners);
+                mesh.deform(deformation, corners);
+                for(int resReduction = 0; resReduction <= maxResolution; resReduction++) {
+                    final int triangles = mesh.getTriangleCount(resReduction, deformation);
+                    final String description = "shape=" + shape + " tolerance=" + tolerance + " resReduction=" + resReduction;
+                    for(boolean smoothShading : new boolean[] {false, true}) {
+                        vertexBuilder.reset();
+                        mesh.render(matrixEntry, vertexBuilder, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, smoothShading, deformation);
+                        if(vertexBuilder.vertices != 3 * triangles) {
+                            failures.add(description + " smoothShading=" + smoothShading + " emitted " + vertexBuilder.vertices + " vertices for " + triangles + " triangles");
+                        }
+                    }
+                    if(tolerance == 0.0F && triangles != mesh.getTriangleCount(resReduction)) {
+                        failures.add(description + " counted " + triangles + " triangles; expected " + mesh.getTriangleCount(resReduction));
+                    }
+                    if(tolerance > 0.0F && shape == MeshBenchmark.Shape.REST && triangles != 12) {
+                        failures.add(description + " counted " + triangles + " triangles; expected 12");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a slime's outer body, and one face of it on its own, at rest and twisted, with and without a tolerance and
+     * smooth shading, and checks that once each thread's scratch has grown, drawing allocates no objects, whether or not
+     * the faces are drawn at different steps.
+     */
+    private static void checkRenderAllocations(ThreadMXBean threads, List<String> failures) {
+        final MatrixStack.Entry matrixEntry = new MatrixStack().getLast();
+        final Vector3f[] corners = new Vector3f[8];
+        final BoxMesh.Deformation deformation = new BoxMesh.Deformation();
+        final CountingVertexBuilder vertexBuilder = new CountingVertexBuilder();
+        final VertexStream vertexStream = new VertexStream();
+        for(int meshResolution : new int[] {2, 4}) {
+            final QuadMesh face = new QuadMesh(new Vector3f(0.0F, 0.0F, 1.0F), 8, 16, new Vector3f(0.0F, 1.0F, 1.0F), 8, 8, new Vector3f(1.0F, 1.0F, 1.0F), 16, 8, new Vector3f(1.0F, 0.0F, 1.0F), 16, 16, meshResolution, 64, 32);
+            for(float tolerance : new float[] {0.0F, 0.005F}) {
+                final BoxMesh mesh = new BoxMesh(new Vector3f(0.0F, 0.0F, 0.0F), new Vector3f(1.0F, 1.0F, 1.0F), 0, 0, 8, 8, 8, meshResolution, 64, 32, tolerance);
+                for(MeshBenchmark.Shape shape : MeshBenchmark.Shape.values()) {
+                    shape.setCorners(corners);
+                    for(boolean smoothShading : new boolean[] {false, true}) {
+                        final String description = "meshResolution=" + meshResolution + " tolerance=" + tolerance + " shape=" + shape + " smoothShading=" + smoothShading;
+                        checkAllocations(threads, failures, "BoxMesh.render " + description, () -> {
+                            vertexBuilder.reset();
+                            mesh.render(matrixEntry, vertexBuilder, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, corners);
+                        });
+                        checkAllocations(threads, failures, "BoxMesh.render to a VertexStream " + description, () -> {
+                            vertexStream.reset();
+                            mesh.render(matrixEntry, vertexStream, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, corners);
+                        });
+                        checkAllocations(threads, failures, "BoxMesh.render from a Deformation " + description, () -> {
+                            vertexBuilder.reset();
+                            mesh.deform(deformation, corners);
+                            mesh.render(matrixEntry, vertexBuilder, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, deformation);
+                        });
+                        if(tolerance == 0.0F) {
+                            checkAllocations(threads, failures, "QuadMesh.render " + description, () -> {
+                                vertexBuilder.reset();
+                                face.render(matrixEntry, vertexBuilder, 0xF000F0, 0, 1.0F, 1.0F, 1.0F, 1.0F, 0, smoothShading, corners);
+                            });
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkAllocations(ThreadMXBean threads, List<String> failures, String description, Runnable render) {
+        for(int i = 0; i < RENDERS; i++) render.run();
+        final long thread = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(thread);
+        for(int i = 0; i < RENDERS; i++) render.run();
+        final double bytes = (double) (threads.getThreadAllocatedBytes(thread) - before) / RENDERS;
+        if(bytes > MAX_RENDER_BYTES) {
+            failures.add(description + " allocated " + bytes + " B per render; expected 0");
+        }
+    }
+
+    /**
+     * Builds the model of {@link MeshFootprintBenchmark} at the lowest and highest mesh resolutions and checks that it
+     * takes about the same memory at both: nothing may be stored per vertex until a level is drawn.
+     */
+    private static void checkFootprint(ThreadMXBean threads, List<String> failures) {
+        final long lowest = getModelFootprint(threads, 0);
+        final long highest = getModelFootprint(threads, 9);
+        if(highest - lowest > MAX_FOOTPRINT_GROWTH) {
+            failures.add("The slime model took " + lowest + " B at meshResolution=0 but " + highest + " B at meshResolution=9; expected at most " + MAX_FOOTPRINT_GROWTH + " B more");
+        }
+    }
+
+    /**
+     * @return the bytes allocated building the model, all of which the model keeps
+     */
+    private static long getModelFootprint(ThreadMXBean threads, int meshResolution) {
+        final MeshFootprintBenchmark benchmark = new MeshFootprintBenchmark();
+        benchmark.meshResolution = meshResolution;
+        benchmark.createModel(); // Loads the classes involved first
+        final long thread = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(thread);
+        benchmark.createModel();
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+}
@@ -0,0 +1,49 @@
+package jigglyslimes.model;
+
+import net.minecraft.util.math.vector.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times building the five boxes of the slime model at each mesh resolution. Everything allocated while building is
+ * kept by the meshes, so the gc profiler's {@code gc.alloc.rate.norm} is the model's memory footprint in bytes. Nothing
+ * is stored per vertex, so {@link MeshChecks} checks that this barely grows with the resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MeshFootprintBenchmark {
+
+    /** The default {@code meshTolerance}, so the boxes are built as the renderer builds them. */
+    private static final float TOLERANCE = 0.005F;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"})
+    public int meshResolution;
+
+    /**
+     * Builds the same boxes as {@code SlimeRenderer.createModelComponents}.
+     */
+    @Benchmark
+    public BoxMesh[] createModel() {
+        return new BoxMesh[] {
+                new BoxMesh(new Vector3f(0.125F, 0.125F, 0.125F), new Vector3f(0.875F, 0.875F, 0.875F), 0, 16, 6, 6, 6, meshResolution, 64, 32, TOLERANCE),
+                new BoxMesh(new Vector3f(0.09375F, 0.5F, 0.6875F), new Vector3f(0.34375F, 0.75F, 0.9375F), 32, 0, 2, 2, 2, Math.max(meshResolution - 2, 0), 64, 32, TOLERANCE),
+                new BoxMesh(new Vector3f(0.65625F, 0.5F, 0.6875F), new Vector3f(0.90625F, 0.75F, 0.9375F), 32, 4, 2, 2, 2, Math.max(meshResolution - 2, 0), 64, 32, TOLERANCE),
+                new BoxMesh(new Vector3f(0.5F, 0.25F, 0.8125F), new Vector3f(0.625F, 0.375F, 0.9375F), 32, 8, 1, 1, 1, Math.max(meshResolution - 3, 0), 64, 32, TOLERANCE),
+                new BoxMesh(new Vector3f(0.0F, 0.0F, 0.0F), new Vector3f(1.0F, 1.0F, 1.0F), 0, 0, 8, 8, 8, meshResolution, 64, 32, TOLERANCE)
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package jigglyslimes.physics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one tick of the spring, drag and restoring forces for a population of slimes, as stepped by each integrator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PhysicsStepBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int slimes;
+
+    @Param({"EXPLICIT", "VERLET", "IMPLICIT"})
+    public Integrator.Type integrator;
+
+    private final JigglyBitStore<Object> store = new JigglyBitStore<>();
+    private final PhysicsParams params = new PhysicsParams(0.5F, 1200.0F, 0.055F, 30.0F);
+
+    @Setup
+    public void setUp() {
+        // Slimes of every natural size, each turned a different way and knocked out of its rest shape
+        final SlimeProfile[] profiles = {new SlimeProfile(0.51F, 0.51F), new SlimeProfile(1.02F, 1.02F), new SlimeProfile(2.04F, 2.04F)};
+        final Random random = new Random(0);
+        for(int i = 0; i < slimes; i++) {
+            final int slot = store.allocate(new Object(), 0.0F, 0.0F, 0.0F);
+            final float yaw = random.nextFloat() * (float) (2 * Math.PI);
+            store.profile[slot] = profiles[i % profiles.length];
+            store.yaw[slot] = yaw;
+            store.cosYaw[slot] = (float) Math.cos(yaw);
+            store.sinYaw[slot] = (float) Math.sin(yaw);
+            final int first = JigglyBitStore.firstBit(slot);
+            for(int bit = 0; bit < JigglyBitStore.BITS_PER_SLOT; bit++) {
+                final int b = first + bit;
+                store.posX[b] = SlimeShape.restX(store, slot, bit) + (random.nextFloat() - 0.5F) * 0.1F;
+                store.posY[b] = SlimeShape.restY(store, slot, bit) + (random.nextFloat() - 0.5F) * 0.1F;
+                store.posZ[b] = SlimeShape.restZ(store, slot, bit) + (random.nextFloat() - 0.5F) * 0.1F;
+                store.velX[b] = (random.nextFloat() - 0.5F) * 2.0F;
+                store.velY[b] = (random.nextFloat() - 0.5F) * 2.0F;
+                store.velZ[b] = (random.nextFloat() - 0.5F) * 2.0F;
+            }
+        }
+    }
+
+    @Benchmark
+    public JigglyBitStore<Object> step() {
+        final Integrator stepper = integrator.integrator;
+        final int slotLimit = store.getSlotLimit();
+        for(int slot = 0; slot < slotLimit; slot++) {
+            stepper.step(store, slot, 0.05F, params);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,59 @@
+package jigglyslimes.physics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs whole ticks of the physics core, collisions included, over a large population of slimes in a
+ * {@link SyntheticWorld}. Tick times are sampled rather than averaged, so that stalls show up in the percentiles, and
+ * the long measurement makes this double as a soak test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 10)
+public class SoakBenchmark {
+
+    @Param({"10000"})
+    public int slimes;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"EXPLICIT", "VERLET", "IMPLICIT"})
+    public Integrator.Type integrator;
+
+    private final PhysicsParams params = new PhysicsParams(0.5F, 1200.0F, 0.055F, 30.0F);
+    private final StepScheduler<Object> everyTick = (slot, slime) -> 1;
+    private SyntheticWorld world;
+    private SlimePhysics<SyntheticWorld.Slime> physics;
+
+    @Setup
+    public void setUp() {
+        world = new SyntheticWorld(slimes);
+        physics = new SlimePhysics<>(world);
+        for(SyntheticWorld.Slime slime : world.slimes) {
+            physics.add(slime);
+        }
+    }
+
+    @Benchmark
+    public JigglyBitStore<SyntheticWorld.Slime> tick() {
+        world.tick();
+        physics.update(everyTick, params, integrator.integrator, 1, threads);
+        return physics.store;
+    }
+}
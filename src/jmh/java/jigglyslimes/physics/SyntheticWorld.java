@@ -0,0 +1,128 @@
+package jigglyslimes.physics;
+
+/**
+ * A stand-in world for running the physics core without a client. The ground is solid below y = 64, with a
+ * two-block-high pillar every eight blocks along each axis. Slimes are laid out in pairs on a grid and hop on the
+ * spot, turning as they go; each slime can bump into its partner. Everything is driven by the tick count, so runs are
+ * repeatable.
+ */
+public final class SyntheticWorld implements SlimeWorld<SyntheticWorld.Slime> {
+
+    private static final int GROUND_Y = 64;
+    private static final int HOP_TICKS = 20;
+    private static final SlimeProfile[] PROFILES = {new SlimeProfile(0.51F, 0.51F), new SlimeProfile(1.02F, 1.02F), new SlimeProfile(2.04F, 2.04F)};
+
+    public static final class Slime {
+        final int index;
+        final SlimeProfile profile;
+        final double homeX, homeZ;
+        double x, y, z;
+        float yaw;
+        Slime partner;
+
+        Slime(int index, double homeX, double homeZ) {
+            this.index = index;
+            this.profile = PROFILES[(index >> 1) % PROFILES.length];
+            this.homeX = homeX;
+            this.homeZ = homeZ;
+        }
+    }
+
+    public final Slime[] slimes;
+    private int tick;
+
+    /**
+     * Lays out a number of slimes, rounded up to an even number, on a square grid.
+     */
+    public SyntheticWorld(int numSlimes) {
+        slimes = new Slime[(numSlimes + 1) & ~1];
+        final int pairsPerRow = (int) Math.ceil(Math.sqrt(slimes.length / 2.0));
+        for(int i = 0; i < slimes.length; i += 2) {
+            final double pairX = (i / 2 % pairsPerRow) * 6.0;
+            final double pairZ = (i / 2 / pairsPerRow) * 6.0;
+            slimes[i] = new Slime(i, pairX + 2.0, pairZ + 2.0);
+            slimes[i + 1] = new Slime(i + 1, pairX + 3.5, pairZ + 2.0);
+            slimes[i].partner = slimes[i + 1];
+            slimes[i + 1].partner = slimes[i];
+        }
+        tick();
+    }
+
+    /**
+     * Moves every slime along to the next tick.
+     */
+    public void tick() {
+        tick++;
+        for(Slime slime : slimes) {
+            final int phase = (tick + slime.index * 7) % HOP_TICKS;
+            final double hop = phase < 10 ? phase * (10 - phase) * 0.02 : 0.0;
+            slime.x = slime.homeX + Math.sin((tick + slime.index) * 0.05) * 0.5;
+            slime.y = GROUND_Y + hop;
+            slime.z = slime.homeZ;
+            slime.yaw = (tick * 3 + slime.index * 40) % 360;
+        }
+    }
+
+    @Override
+    public double getX(Slime slime) {
+        return slime.x;
+    }
+
+    @Override
+    public double getY(Slime slime) {
+        return slime.y;
+    }
+
+    @Override
+    public double getZ(Slime slime) {
+        return slime.z;
+    }
+
+    @Override
+    public float getYaw(Slime slime) {
+        return slime.yaw;
+    }
+
+    @Override
+    public float getWidth(Slime slime) {
+        return slime.profile.width;
+    }
+
+    @Override
+    public float getHeight(Slime slime) {
+        return slime.profile.height;
+    }
+
+    @Override
+    public SlimeProfile getProfile(Slime slime) {
+        return slime.profile;
+    }
+
+    @Override
+    public boolean isUpsideDown(Slime slime) {
+        return false;
+    }
+
+    @Override
+    public boolean hasGravity(Slime slime) {
+        return true;
+    }
+
+    @Override
+    public boolean isSolidOrLiquid(double x, double y, double z) {
+        final int blockX = (int) Math.floor(x);
+        final int blockY = (int) Math.floor(y);
+        final int blockZ = (int) Math.floor(z);
+        return blockY < GROUND_Y || (blockY < GROUND_Y + 2 && (blockX & 7) == 0 && (blockZ & 7) == 0);
+    }
+
+    @Override
+    public void gatherNearbyBoxes(Slime slime, NearbyBoxes out) {
+        final Slime other = slime.partner;
+        final double reach = (slime.profile.width + other.profile.width) / 2;
+        if(Math.abs(other.x - slime.x) < reach && Math.abs(other.z - slime.z) < reach) {
+            final double halfWidth = other.profile.halfWidth;
+            out.add(other.x - halfWidth, other.y, other.z - halfWidth, other.x + halfWidth, other.y + other.profile.height, other.z + halfWidth, other.x, other.y, other.z);
+        }
+    }
+}
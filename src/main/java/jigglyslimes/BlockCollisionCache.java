@@ -0,0 +1,84 @@
+package jigglyslimes;
+
+import net.minecraft.block.material.Material;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+
+/**
+ * Remembers whether the blocks that jiggly bits have landed in are solid or liquid, keyed by packed block position.
+ * Every bit of a slime, and every substep, tends to check the same few blocks, so each block is only looked up in the
+ * world once per tick. Entries are stamped with the tick they were looked up in and count as missing in any later
+ * tick, so a block placed or broken is seen by the next tick without the client having to report the change. Lookups
+ * allocate nothing; only use from the client thread.
+ */
+public final class BlockCollisionCache {
+
+    private static final int CAPACITY = 4096; // Must be a power of two
+    private static final int MAX_ENTRIES = CAPACITY * 3 / 4;
+
+    private static final byte EMPTY = 0;
+    private static final byte FREE = 1;
+    private static final byte COLLIDING = 2;
+
+    private static final long[] keys = new long[CAPACITY];
+    private static final byte[] states = new byte[CAPACITY];
+    private static final long[] lookupTimes = new long[CAPACITY];
+    private static int numEntries = 0;
+
+    private static final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+
+    /**
+     * @return whether the block containing the given world position is solid or liquid
+     */
+    public static boolean isColliding(World world, double x, double y, double z) {
+        final int blockX = MathHelper.floor(x);
+        final int blockY = MathHelper.floor(y);
+        final int blockZ = MathHelper.floor(z);
+        final long key = BlockPos.pack(blockX, blockY, blockZ);
+        final long time = world.getGameTime();
+
+        int i = indexOf(key);
+        if(states[i] != EMPTY && lookupTimes[i] == time) return states[i] == COLLIDING;
+
+        if(states[i] == EMPTY) {
+            if(numEntries >= MAX_ENTRIES) {
+                clear();
+                i = indexOf(key);
+            }
+            keys[i] = key;
+            numEntries++;
+        }
+        SlimeMetrics.countBlockLookup();
+        Material material = world.getBlockState(mutablePos.setPos(blockX, blockY, blockZ)).getMaterial();
+        final boolean colliding = material.isSolid() || material.isLiquid();
+        states[i] = colliding ? COLLIDING : FREE;
+        lookupTimes[i] = time;
+        return colliding;
+    }
+
+    public static void clear() {
+        Arrays.fill(states, EMPTY);
+        numEntries = 0;
+    }
+
+    /**
+     * @return the index holding the key, or the empty index where it would be inserted
+     */
+    private static int indexOf(long key) {
+        int i = (int) (mix(key) & (CAPACITY - 1));
+        while(states[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & (CAPACITY - 1);
+        }
+        return i;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -1,10 +1,17 @@
 package jigglyslimes;
 
-import net.minecraft.entity.LivingEntity;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.monster.SlimeEntity;
 import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.RenderGameOverlayEvent;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.entity.EntityLeaveWorldEvent;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
-import net.minecraftforge.event.entity.living.LivingEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
@@ -12,14 +19,69 @@ import net.minecraftforge.fml.common.Mod;
 public class EventHandler {
 
     @SubscribeEvent
-    public static void onLivingUpdate(LivingEvent.LivingUpdateEvent event) {
-        LivingEntity entity = event.getEntityLiving();
-        if(entity.getClass() == SlimeEntity.class && entity.world.isRemote) {
-            SlimeEntity entitySlime = (SlimeEntity) entity;
-            if(!SlimeJigglyBits.BY_ENTITY.containsKey(entitySlime)) {
-                SlimeJigglyBits.BY_ENTITY.put(entitySlime, new SlimeJigglyBits(entitySlime.getPositionVec()));
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if(event.phase == TickEvent.Phase.END) {
+            JSConfig.reloadIfChanged();
+            while(SlimeMetrics.DUMP_KEY.isPressed()) {
+                SlimeMetrics.dump();
+            }
+            final Minecraft minecraft = Minecraft.getInstance();
+            if(minecraft.world != null && !minecraft.isGamePaused()) {
+                SlimeJigglyBits.updateAll();
             }
-            SlimeJigglyBits.BY_ENTITY.get(entitySlime).update(entitySlime);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onRenderWorldLast(RenderWorldLastEvent event) {
+        SlimeRenderer.endFrame();
+    }
+
+    @SubscribeEvent
+    public static void onRenderDebugText(RenderGameOverlayEvent.Text event) {
+        if(Minecraft.getInstance().gameSettings.showDebugInfo) {
+            event.getLeft().add("Jiggly Slimes: " + SlimeLOD.getSlimesLastFrame() + " slimes, " + SlimeLOD.getTrianglesLastFrame() + " triangles");
+            SlimeMetrics.addDebugText(event.getLeft());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onEntityJoinWorld(EntityJoinWorldEvent event) {
+        Entity entity = event.getEntity();
+        if(entity.getClass() == SlimeEntity.class && entity.world.isRemote) {
+            SlimeJigglyBits.get((SlimeEntity) entity);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onEntityLeaveWorld(EntityLeaveWorldEvent event) {
+        Entity entity = event.getEntity();
+        if(entity.getClass() == SlimeEntity.class && entity.world.isRemote) {
+            SlimeJigglyBits.remove((SlimeEntity) entity);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event) {
+        if(event.getWorld().isRemote()) {
+            SlimeJigglyBits.clear();
+            BlockCollisionCache.clear();
+            SlimeVisibility.clear();
+            SlimeRenderer.clearQueue();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        if(event.getWorld() != null && event.getWorld().isRemote()) {
+            SlimeVisibility.invalidateChunk(event.getWorld(), event.getChunk().getPos().x, event.getChunk().getPos().z);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload event) {
+        if(event.getWorld() != null && event.getWorld().isRemote()) {
+            SlimeVisibility.invalidateChunk(event.getWorld(), event.getChunk().getPos().x, event.getChunk().getPos().z);
         }
     }
 
@@ -1,19 +1,37 @@
 package jigglyslimes;
 
 import jigglyslimes.config.Config;
+import jigglyslimes.config.ConfigWatcher;
+import jigglyslimes.physics.Integrator;
+import jigglyslimes.physics.PhysicsParams;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.HashSet;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 public final class JSConfig {
 
     public static Config.Range.Int meshResolution = new Config.Range.Int("meshResolution", 4).setMin(0).setMax(9).setComment("Higher numbers produce smoother-looking slimes.");
+    public static Config.Range.Double meshTolerance = new Config.Range.Double("meshTolerance", 0.005).setMin(0.0).setComment("Most distance, in blocks, a slime's surface may stray from the triangles drawing it. Faces flatter than this are drawn with fewer triangles, so slimes at rest cost very little. 0 always uses the full meshResolution.");
+    public static Config.Range.Int meshThreads = new Config.Range.Int("meshThreads", 1).setMin(1).setMax(64).setComment("Number of threads that build slime meshes. 1 builds them on the render thread; more leaves the render thread only copying finished vertices. Not used with gpuMeshBuffers.");
+    public static Config.Bool smoothShading = new Config.Bool("smoothShading", false).setComment("Shade slimes with one averaged normal per vertex instead of one normal per triangle.");
+    public static Config.Bool gpuMeshBuffers = new Config.Bool("gpuMeshBuffers", false).setComment("Keep slime texture coordinates and triangles in GPU buffers and only upload moving vertex data each frame. Slimes are always smooth shaded in this mode.");
+    public static Config.Range.Int triangleBudget = new Config.Range.Int("triangleBudget", 250000).setMin(0).setComment("Most triangles to draw for all slimes in a frame. Small and distant slimes lose detail first once it is reached. 0 = no limit.");
+    public static Config.Choice<Integrator.Type> integrator = new Config.Choice<>("integrator", Integrator.Type.EXPLICIT, Integrator.Type.class).setComment("How slime physics are stepped. explicit is the cheapest but can shake apart with high rigidity; verlet and implicit stay stable at any rigidity.");
+    public static Config.Range.Int substeps = new Config.Range.Int("substeps", 1).setMin(1).setMax(16).setComment("Number of physics steps per tick. More steps are smoother and more stable, at a proportional cost.");
+    public static Config.Range.Double physicsFullRateDistance = new Config.Range.Double("physicsFullRateDistance", 32.0).setMin(0.0).setComment("Slimes within this many blocks of the camera, and on screen, have their physics stepped every tick.");
+    public static Config.Range.Int physicsReducedInterval = new Config.Range.Int("physicsReducedInterval", 4).setMin(1).setMax(20).setComment("Slimes further away than physicsFullRateDistance, or off screen, have their physics stepped once every this many ticks.");
+    public static Config.Range.Double physicsSleepDistance = new Config.Range.Double("physicsSleepDistance", 96.0).setMin(0.0).setComment("Slimes further than this many blocks from the camera stop simulating until they come closer.");
+    public static Config.Range.Int physicsThreads = new Config.Range.Int("physicsThreads", 1).setMin(1).setMax(64).setComment("Number of threads that step slime physics. 1 keeps it all on the client thread; more helps with large numbers of slimes.");
+    public static Config.Bool metrics = new Config.Bool("metrics", false).setComment("Record how long slime physics and rendering take, with counters, shown in the F3 screen. The last minute can be dumped to CSV files with the 'Dump Metrics' key.");
 
     public static final Slime slime = new Slime();
     private static class Slime {
@@ -27,54 +45,139 @@ public final class JSConfig {
     private static final SortedSet<Config> CONFIGS = new TreeSet<>();
     private static final Logger LOGGER = LogManager.getLogger();
 
+    private static PhysicsParams physicsParams = resolvePhysicsParams();
+    private static ConfigWatcher watcher;
+
     static {
         CONFIGS.add(meshResolution);
+        CONFIGS.add(meshThreads);
+        CONFIGS.add(meshTolerance);
+        CONFIGS.add(gpuMeshBuffers);
+        CONFIGS.add(integrator);
+        CONFIGS.add(physicsFullRateDistance);
+        CONFIGS.add(physicsReducedInterval);
+        CONFIGS.add(physicsSleepDistance);
+        CONFIGS.add(physicsThreads);
+        CONFIGS.add(metrics);
+        CONFIGS.add(smoothShading);
+        CONFIGS.add(substeps);
+        CONFIGS.add(triangleBudget);
         CONFIGS.add(slime.collisionFriction);
         CONFIGS.add(slime.density);
         CONFIGS.add(slime.internalFriction);
         CONFIGS.add(slime.rigidity);
     }
 
+    /**
+     * Loads the config file. If the file is missing, or lacks entries added since it was written, it is rewritten with
+     * every entry so that new settings show up in it.
+     */
     public static void loadConfig() {
+        boolean complete;
         try(Scanner sc = new Scanner(CONFIG_FILE)) {
-            while(sc.hasNextLine()) {
-                String nextLine = sc.nextLine();
-                final int commentBegin = nextLine.indexOf('#');
-                if(commentBegin >= 0) {
-                    nextLine = nextLine.substring(0, commentBegin);
-                }
-                final String[] tokens = nextLine.split("=", 2);
-                tokens[0] = tokens[0].trim();
-
-                if(!tokens[0].isEmpty() && tokens.length > 1) {
-                    tokens[1] = tokens[1].trim();
-                    boolean matched = false;
-                    for(Config config : CONFIGS) {
-                        if(tokens[0].equals(config.getName())) {
-                            config.parse(tokens[1]);
-                            matched = true;
-                            break;
-                        }
-                    }
-                    if(!matched) {
-                        LOGGER.warn("Unrecognized config entry '" + tokens[0] + "', skipping over");
+            complete = parseConfig(sc);
+        } catch(FileNotFoundException e) {
+            complete = false;
+        }
+        if(!complete) {
+            writeConfig();
+        }
+        physicsParams = resolvePhysicsParams();
+    }
+
+    /**
+     * Loads config entries from a source other than the config file. Entries missing from it keep their current values.
+     */
+    public static void loadConfig(Reader reader) {
+        parseConfig(new Scanner(reader));
+        physicsParams = resolvePhysicsParams();
+    }
+
+    /**
+     * @return whether every config entry was present
+     */
+    private static boolean parseConfig(Scanner sc) {
+        final Set<Config> found = new HashSet<>();
+        while(sc.hasNextLine()) {
+            String nextLine = sc.nextLine();
+            final int commentBegin = nextLine.indexOf('#');
+            if(commentBegin >= 0) {
+                nextLine = nextLine.substring(0, commentBegin);
+            }
+            final String[] tokens = nextLine.split("=", 2);
+            tokens[0] = tokens[0].trim();
+
+            if(!tokens[0].isEmpty() && tokens.length > 1) {
+                tokens[1] = tokens[1].trim();
+                boolean matched = false;
+                for(Config config : CONFIGS) {
+                    if(tokens[0].equals(config.getName())) {
+                        config.parse(tokens[1]);
+                        found.add(config);
+                        matched = true;
+                        break;
                     }
                 }
+                if(!matched) {
+                    LOGGER.warn("Unrecognized config entry '" + tokens[0] + "', skipping over");
+                }
             }
-        } catch(FileNotFoundException e) {
-            writeConfig();
         }
+        return found.size() == CONFIGS.size();
     }
 
     public static void writeConfig() {
         try(PrintWriter wr = new PrintWriter(CONFIG_FILE)) {
-            for(Config configOption : CONFIGS) {
-                configOption.write(wr);
-                wr.println();
-            }
-            LOGGER.info("Wrote to config file at " + CONFIG_FILE.getAbsolutePath());
+            writeConfig(wr);
         } catch(FileNotFoundException e) {
             LOGGER.warn("Could not write to config file at " + CONFIG_FILE.getAbsolutePath());
+            return;
+        }
+        if(watcher != null) watcher.ignoreCurrentVersion();
+        LOGGER.info("Wrote to config file at " + CONFIG_FILE.getAbsolutePath());
+    }
+
+    /**
+     * Writes every config entry with its current value, in the same format as the config file.
+     */
+    public static void writeConfig(PrintWriter wr) {
+        for(Config configOption : CONFIGS) {
+            configOption.write(wr);
+            wr.println();
         }
     }
+
+    /**
+     * Starts watching the config file, so that edits to it are picked up by {@link #reloadIfChanged()}.
+     */
+    public static void watchConfig() {
+        if(watcher == null) watcher = ConfigWatcher.start(CONFIG_FILE);
+    }
+
+    /**
+     * Reloads the config if the file has changed since it was last loaded. Must be called on the client thread between
+     * ticks, so that the physics and the renderer never see a half-applied reload.
+     */
+    public static void reloadIfChanged() {
+        if(watcher == null || !watcher.consumeChange()) return;
+
+        final int oldMeshResolution = meshResolution.getValue();
+        final double oldMeshTolerance = meshTolerance.getValue();
+        loadConfig();
+        if(meshResolution.getValue() != oldMeshResolution || meshTolerance.getValue() != oldMeshTolerance) {
+            SlimeRenderer.createModelComponents();
+        }
+        LOGGER.info("Reloaded config file at " + CONFIG_FILE.getAbsolutePath());
+    }
+
+    /**
+     * @return the slime physics settings as of the last time the config was loaded
+     */
+    public static PhysicsParams getPhysicsParams() {
+        return physicsParams;
+    }
+
+    private static PhysicsParams resolvePhysicsParams() {
+        return new PhysicsParams(slime.collisionFriction.getValue().floatValue(), slime.density.getValue().floatValue(), slime.internalFriction.getValue().floatValue(), slime.rigidity.getValue().floatValue());
+    }
 }
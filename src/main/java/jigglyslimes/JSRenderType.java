@@ -1,5 +1,6 @@
 package jigglyslimes;
 
+import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.RenderState;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
@@ -7,6 +8,8 @@ import net.minecraft.client.renderer.vertex.VertexFormat;
 import net.minecraft.util.ResourceLocation;
 import org.lwjgl.opengl.GL11;
 
+import javax.annotation.Nonnull;
+
 /**
  * A {@code RenderType} defines how a class of objects will be rendered.
  */
@@ -48,6 +51,20 @@ public class JSRenderType extends RenderType {
         return getEntityCutoutNoCullTris(textureLocation, true);
     }
 
+    /**
+     * @return a render type that draws nothing, but runs a task each time a buffer source finishes it, so that the task
+     * happens at the same point as that buffer source's own drawing
+     */
+    public static RenderType getFinishHook(String name, Runnable task) {
+        return new JSRenderType(name, DefaultVertexFormats.POSITION, GL11.GL_TRIANGLES, 256, false, false, () -> {}, () -> {}) {
+            @Override
+            public void finish(@Nonnull BufferBuilder bufferBuilder, int cameraX, int cameraY, int cameraZ) {
+                super.finish(bufferBuilder, cameraX, cameraY, cameraZ);
+                task.run();
+            }
+        };
+    }
+
     @SuppressWarnings("unused")
     public JSRenderType(String name, VertexFormat format, int drawMode, int bufferSize, boolean useDelegate, boolean needsSorting, Runnable setupTask, Runnable clearTask) {
         super(name, format, drawMode, bufferSize, useDelegate, needsSorting, setupTask, clearTask);
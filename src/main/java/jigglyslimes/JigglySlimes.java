@@ -1,6 +1,7 @@
 package jigglyslimes;
 
 import net.minecraft.entity.EntityType;
+import net.minecraftforge.fml.client.registry.ClientRegistry;
 import net.minecraftforge.fml.client.registry.RenderingRegistry;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
@@ -12,8 +13,6 @@ import org.apache.logging.log4j.Logger;
 public class JigglySlimes {
 
     public static final String MODID = "jigglyslimes";
-    public static final float GRAVITY = -32.0F; // In m/s^2
-    public static final float AIR_DENSITY = 1.2F; // In kg/m^3
 
     private static final Logger LOGGER = LogManager.getLogger();
 
@@ -23,8 +22,11 @@ public class JigglySlimes {
 
     private void doClientStuff(final FMLClientSetupEvent event) {
         JSConfig.loadConfig();
+        JSConfig.watchConfig();
+        ClientRegistry.registerKeyBinding(SlimeMetrics.DUMP_KEY);
 
         RenderingRegistry.registerEntityRenderingHandler(EntityType.SLIME, SlimeRenderer::new);
+        event.enqueueWork(SlimeRenderer::registerFlushRenderType);
         LOGGER.debug("Registered renderer for EntityType.SLIME.");
     }
 }
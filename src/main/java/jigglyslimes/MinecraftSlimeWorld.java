@@ -0,0 +1,95 @@
+package jigglyslimes;
+
+import jigglyslimes.physics.NearbyBoxes;
+import jigglyslimes.physics.SlimeProfile;
+import jigglyslimes.physics.SlimeWorld;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.monster.SlimeEntity;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.TextFormatting;
+
+import java.util.List;
+
+/**
+ * Binds the physics core to the client world: slimes are {@link SlimeEntity} instances, reached through their
+ * {@link SlimeJigglyBits}, and blocks are looked up through {@link BlockCollisionCache}. Only use from the client
+ * thread.
+ */
+final class MinecraftSlimeWorld implements SlimeWorld<SlimeJigglyBits> {
+
+    @Override
+    public double getX(SlimeJigglyBits slime) {
+        return slime.entity.getPosX();
+    }
+
+    @Override
+    public double getY(SlimeJigglyBits slime) {
+        return slime.entity.getPosY();
+    }
+
+    @Override
+    public double getZ(SlimeJigglyBits slime) {
+        return slime.entity.getPosZ();
+    }
+
+    @Override
+    public float getYaw(SlimeJigglyBits slime) {
+        return slime.entity.renderYawOffset;
+    }
+
+    @Override
+    public float getWidth(SlimeJigglyBits slime) {
+        return slime.entity.getWidth();
+    }
+
+    @Override
+    public float getHeight(SlimeJigglyBits slime) {
+        return slime.entity.getHeight();
+    }
+
+    @Override
+    public SlimeProfile getProfile(SlimeJigglyBits slime) {
+        return SlimeProfiles.get(slime.entity);
+    }
+
+    @Override
+    public boolean isUpsideDown(SlimeJigglyBits slime) {
+        // The name component is only replaced when the name changes, so it can be compared by identity.
+        final ITextComponent customName = slime.entity.getCustomName();
+        if(customName != slime.customName) {
+            slime.customName = customName;
+            boolean renderUpsideDown = false;
+            if(customName != null) {
+                String name = TextFormatting.getTextWithoutFormattingCodes(customName.getString());
+                renderUpsideDown = "Dinnerbone".equals(name) || "Grumm".equals(name);
+            }
+            slime.upsideDown = renderUpsideDown;
+        }
+        return slime.upsideDown;
+    }
+
+    @Override
+    public boolean hasGravity(SlimeJigglyBits slime) {
+        return !slime.entity.hasNoGravity();
+    }
+
+    @Override
+    public boolean isSolidOrLiquid(double x, double y, double z) {
+        SlimeMetrics.countBlockQuery();
+        return BlockCollisionCache.isColliding(Minecraft.getInstance().world, x, y, z);
+    }
+
+    @Override
+    public void gatherNearbyBoxes(SlimeJigglyBits slime, NearbyBoxes out) {
+        SlimeMetrics.countEntityQuery();
+        final SlimeEntity entity = slime.entity;
+        final List<Entity> candidates = entity.world.getEntitiesInAABBexcluding(entity, entity.getRenderBoundingBox(), collided -> collided != null && collided.isAlive());
+        for(int c = 0; c < candidates.size(); c++) {
+            final Entity collided = candidates.get(c);
+            final AxisAlignedBB bb = collided.getRenderBoundingBox();
+            out.add(bb.minX, bb.minY, bb.minZ, bb.maxX, bb.maxY, bb.maxZ, collided.getPosX(), collided.getPosY(), collided.getPosZ());
+        }
+    }
+}
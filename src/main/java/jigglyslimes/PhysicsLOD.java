@@ -0,0 +1,150 @@
+package jigglyslimes;
+
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.Arrays;
+
+/**
+ * Decides how often the jiggly bits of each slime are stepped. Slimes near the camera are stepped every tick. Slimes
+ * further away, or that have not been drawn recently, are stepped every few ticks. Slimes beyond that, slimes that
+ * {@link SlimeVisibility} finds hidden, and slimes that have come to rest, sleep and are not stepped at all until
+ * something could make them move again.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class PhysicsLOD {
+
+    /** A slime that has not been drawn for this many ticks is treated as off-screen. */
+    private static final int OFF_SCREEN_TICKS = 10;
+    /** Jiggly bits slower than this, in m/s, count as at rest. */
+    private static final float SETTLED_SPEED = 0.02F;
+    /** How many ticks in a row a slime must be at rest before it falls asleep. */
+    private static final int SETTLED_TICKS = 20;
+
+    private static final byte AWAKE = 0;
+    private static final byte SETTLED = 1; // Asleep where it came to rest; resumes from the same shape
+    private static final byte DISTANT = 2; // Asleep because it is too far away or hidden; snaps to its rest shape on waking
+
+    private static int tick;
+    private static int[] lastRenderedTick = new int[64];
+    private static int[] ticksUntilStep = new int[64];
+    private static int[] quietTicks = new int[64];
+    private static byte[] sleepState = new byte[64];
+    private static boolean[] needsSnap = new boolean[64];
+
+    private PhysicsLOD() {}
+
+    /**
+     * Forgets the state of a slot, so that its next slime starts awake.
+     */
+    public static void reset(int slot) {
+        if(slot >= sleepState.length) {
+            final int length = Math.max(sleepState.length * 2, slot + 1);
+            lastRenderedTick = Arrays.copyOf(lastRenderedTick, length);
+            ticksUntilStep = Arrays.copyOf(ticksUntilStep, length);
+            quietTicks = Arrays.copyOf(quietTicks, length);
+            sleepState = Arrays.copyOf(sleepState, length);
+            needsSnap = Arrays.copyOf(needsSnap, length);
+        }
+        lastRenderedTick[slot] = tick;
+        ticksUntilStep[slot] = 0;
+        quietTicks[slot] = 0;
+        sleepState[slot] = AWAKE;
+        needsSnap[slot] = false;
+    }
+
+    /**
+     * Records that a slime was drawn. Called from the renderer.
+     */
+    public static void markRendered(int slot) {
+        lastRenderedTick[slot] = tick;
+    }
+
+    /**
+     * Advances the tick counter. Called once per client tick before any slime is scheduled.
+     */
+    public static void beginTick() {
+        tick++;
+    }
+
+    /**
+     * Decides whether a slime is stepped this tick.
+     * @param slot - the slime's jiggly bit slot
+     * @param entity - the slime
+     * @param camera - the position of the camera
+     * @return the number of ticks to step the slime by; 0 if it is not stepped this tick
+     */
+    public static int schedule(int slot, LivingEntity entity, Vector3d camera) {
+        final double distanceSq = entity.getDistanceSq(camera.x, camera.y, camera.z);
+        final double fullRateDistance = JSConfig.physicsFullRateDistance.getValue();
+        final double sleepDistance = Math.max(JSConfig.physicsSleepDistance.getValue(), fullRateDistance);
+
+        if(distanceSq > sleepDistance * sleepDistance || SlimeVisibility.isHidden(slot, entity.world.getGameTime())) {
+            sleepState[slot] = DISTANT;
+            return 0;
+        }
+        if(sleepState[slot] == SETTLED && !isDisturbed(entity)) {
+            return 0;
+        }
+        if(sleepState[slot] != AWAKE) {
+            // Step right away, rather than waiting out a reduced-rate interval
+            needsSnap[slot] = sleepState[slot] == DISTANT;
+            sleepState[slot] = AWAKE;
+            quietTicks[slot] = 0;
+            ticksUntilStep[slot] = 0;
+        }
+
+        final boolean onScreen = tick - lastRenderedTick[slot] <= OFF_SCREEN_TICKS;
+        final int interval = onScreen && distanceSq <= fullRateDistance * fullRateDistance ? 1 : JSConfig.physicsReducedInterval.getValue();
+        if(ticksUntilStep[slot] > 0) {
+            ticksUntilStep[slot]--;
+            return 0;
+        }
+        ticksUntilStep[slot] = interval - 1;
+        return interval;
+    }
+
+    /**
+     * @return whether a slime is asleep
+     */
+    public static boolean isAsleep(int slot) {
+        return sleepState[slot] != AWAKE;
+    }
+
+    /**
+     * @return whether a slime should be snapped to its rest shape before it is stepped, because it has just woken up
+     * from sleeping out of range. Clears the flag.
+     */
+    public static boolean consumeSnap(int slot) {
+        final boolean snap = needsSnap[slot];
+        needsSnap[slot] = false;
+        return snap;
+    }
+
+    /**
+     * Updates whether a slime has settled after it has been stepped, putting it to sleep once its jiggly bits have been
+     * at rest for long enough.
+     * @param maxSpeedSq - the greatest squared speed of the slime's jiggly bits relative to the slime
+     * @param ticks - the number of ticks the slime was stepped by
+     */
+    public static void afterStep(int slot, LivingEntity entity, float maxSpeedSq, int ticks) {
+        if(maxSpeedSq < SETTLED_SPEED * SETTLED_SPEED && !isDisturbed(entity)) {
+            quietTicks[slot] += ticks;
+            if(quietTicks[slot] >= SETTLED_TICKS) {
+                sleepState[slot] = SETTLED;
+                quietTicks[slot] = 0;
+            }
+        } else {
+            quietTicks[slot] = 0;
+        }
+    }
+
+    /**
+     * @return whether anything happened to a slime this tick that could set its jiggly bits moving
+     */
+    private static boolean isDisturbed(LivingEntity entity) {
+        return entity.getPosX() != entity.prevPosX || entity.getPosY() != entity.prevPosY || entity.getPosZ() != entity.prevPosZ || entity.renderYawOffset != entity.prevRenderYawOffset;
+    }
+}
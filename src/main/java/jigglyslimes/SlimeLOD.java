@@ -0,0 +1,112 @@
+package jigglyslimes;
+
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.Arrays;
+
+/**
+ * Picks the mesh resolution of each slime from how large it appears on screen. A level is a resolution reduction, so
+ * level 0 is the full mesh resolution and each level above it halves the number of cells along each edge of a face.
+ * Levels are remembered per jiggly bit slot so that a slime hovering around a threshold keeps its level instead of
+ * flickering between two.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class SlimeLOD {
+
+    /** The preferred on-screen size of one mesh cell, in pixels. */
+    private static final double TARGET_CELL_PIXELS = 6.0;
+    /** How far past the halfway point between two levels a slime must go before its level changes. */
+    private static final double HYSTERESIS = 0.25;
+
+    private static int[] levels = new int[64];
+    private static int maxLevel;
+
+    private static int trianglesThisFrame;
+    private static int trianglesLastFrame;
+    private static int slimesThisFrame;
+    private static int slimesLastFrame;
+
+    private SlimeLOD() {}
+
+    /**
+     * Forgets the level of a slot, so that its next slime starts fresh.
+     */
+    public static void reset(int slot) {
+        if(slot >= levels.length) levels = Arrays.copyOf(levels, Math.max(levels.length * 2, slot + 1));
+        levels[slot] = -1;
+    }
+
+    /**
+     * Sets the highest level, at which a slime is drawn with the fewest triangles.
+     */
+    public static void setMaxLevel(int level) {
+        maxLevel = level;
+    }
+
+    public static int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * @return the projected height, in pixels, of a sphere with a radius at a squared distance from the camera
+     */
+    public static float getScreenSize(double radius, double distanceSq) {
+        final Minecraft minecraft = Minecraft.getInstance();
+        final double halfFov = Math.toRadians(minecraft.gameSettings.fov) * 0.5;
+        final double distance = Math.max(Math.sqrt(distanceSq), radius);
+        return (float) (radius / distance / Math.tan(halfFov) * minecraft.getMainWindow().getFramebufferHeight());
+    }
+
+    /**
+     * Picks the level of a slime, sticking with its previous level unless the ideal level has moved far enough away.
+     * @param slot - the slime's jiggly bit slot
+     * @param screenSize - the slime's projected size in pixels
+     * @return the level to draw the slime at, before any triangle budget is applied
+     */
+    public static int selectLevel(int slot, float screenSize) {
+        final int maxLevel = getMaxLevel();
+        final double cells = screenSize / TARGET_CELL_PIXELS;
+        final double ideal = cells <= 1.0 ? maxLevel : maxLevel - Math.log(cells) / Math.log(2.0);
+
+        int level = levels[slot];
+        if(level < 0 || level > maxLevel || Math.abs(ideal - level) > 0.5 + HYSTERESIS) {
+            level = Math.max(0, Math.min((int) Math.round(ideal), maxLevel));
+            levels[slot] = level;
+        }
+        return level;
+    }
+
+    /**
+     * Counts a slime rendered this frame.
+     */
+    public static void countSlime() {
+        slimesThisFrame++;
+    }
+
+    /**
+     * Counts triangles drawn this frame.
+     */
+    public static void countTriangles(int triangles) {
+        trianglesThisFrame += triangles;
+    }
+
+    /**
+     * Closes the frame's statistics. Called once per frame after every slime has been drawn.
+     */
+    public static void endFrame() {
+        trianglesLastFrame = trianglesThisFrame;
+        slimesLastFrame = slimesThisFrame;
+        trianglesThisFrame = 0;
+        slimesThisFrame = 0;
+    }
+
+    public static int getTrianglesLastFrame() {
+        return trianglesLastFrame;
+    }
+
+    public static int getSlimesLastFrame() {
+        return slimesLastFrame;
+    }
+}
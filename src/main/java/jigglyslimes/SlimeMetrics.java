@@ -0,0 +1,233 @@
+package jigglyslimes;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.settings.KeyBinding;
+import net.minecraft.client.util.InputMappings;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.client.settings.KeyConflictContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Timings and counters for what slimes cost each client tick and each frame. The latest values are shown in the F3
+ * overlay, and the last {@value #HISTORY} ticks and frames are kept so that they can be dumped to CSV files. Every hook
+ * checks {@link #enabled} first, so with {@link JSConfig#metrics} off they cost a field read. Only use from the client
+ * thread.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class SlimeMetrics {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** The number of ticks and of frames kept; a minute of ticks. */
+    private static final int HISTORY = 1200;
+
+    /** The ways slime triangles are drawn, which each use their own render type. */
+    public enum Pass {
+        CUTOUT, TRANSLUCENT, INVISIBLE, OUTLINE
+    }
+
+    private static final String[] TICK_COLUMNS = {"physicsNanos", "slimesSimulated", "blockQueries", "blockLookups", "entityQueries"};
+    private static final int PHYSICS_NANOS = 0, SLIMES_SIMULATED = 1, BLOCK_QUERIES = 2, BLOCK_LOOKUPS = 3, ENTITY_QUERIES = 4;
+
+    private static final String[] FRAME_COLUMNS = {"renderNanos", "slimesRendered", "slimesCulled", "cutoutTriangles", "cutoutVertices", "translucentTriangles", "translucentVertices", "invisibleTriangles", "invisibleVertices", "outlineTriangles", "outlineVertices", "bufferGrowths"};
+    private static final int RENDER_NANOS = 0, SLIMES_RENDERED = 1, SLIMES_CULLED = 2, FIRST_PASS = 3, BUFFER_GROWTHS = 11;
+
+    /** Dumps the recorded metrics; unbound by default. */
+    public static final KeyBinding DUMP_KEY = new KeyBinding("key.jigglyslimes.dumpMetrics", KeyConflictContext.IN_GAME, InputMappings.Type.KEYSYM, InputMappings.INPUT_INVALID.getKeyCode(), "key.categories.jigglyslimes");
+
+    /** Whether metrics are being recorded; read from the config at the start of each tick. */
+    public static boolean enabled;
+
+    private static final long[] tick = new long[TICK_COLUMNS.length];
+    private static final long[] frame = new long[FRAME_COLUMNS.length];
+    private static final long[][] tickHistory = new long[HISTORY][TICK_COLUMNS.length];
+    private static final long[][] frameHistory = new long[HISTORY][FRAME_COLUMNS.length];
+    private static int ticksRecorded;
+    private static int framesRecorded;
+    // Sorted copies of a column of the history, kept between uses so that the F3 overlay allocates nothing for them
+    private static final long[] percentileScratch = new long[HISTORY];
+
+    private SlimeMetrics() {}
+
+    /**
+     * @return the time to pass to {@link #endTick} or {@link #addRenderTime}, or 0 if metrics are off
+     */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Starts recording a client tick. Called before the slimes are stepped.
+     */
+    public static void beginTick() {
+        enabled = JSConfig.metrics.getValue();
+        if(enabled) Arrays.fill(tick, 0L);
+    }
+
+    /**
+     * Finishes recording a client tick.
+     * @param start - the time returned by {@link #startTimer} when the tick's physics started
+     */
+    public static void endTick(long start) {
+        if(!enabled) return;
+        tick[PHYSICS_NANOS] = System.nanoTime() - start;
+        System.arraycopy(tick, 0, tickHistory[ticksRecorded % HISTORY], 0, tick.length);
+        ticksRecorded++;
+    }
+
+    public static void countSimulated() {
+        if(enabled) tick[SLIMES_SIMULATED]++;
+    }
+
+    /**
+     * Counts a check of whether a point in the world is solid or liquid.
+     */
+    public static void countBlockQuery() {
+        if(enabled) tick[BLOCK_QUERIES]++;
+    }
+
+    /**
+     * Counts a block state that had to be read from the world because it was not cached.
+     */
+    public static void countBlockLookup() {
+        if(enabled) tick[BLOCK_LOOKUPS]++;
+    }
+
+    /**
+     * Counts a search of the world for entities near a slime.
+     */
+    public static void countEntityQuery() {
+        if(enabled) tick[ENTITY_QUERIES]++;
+    }
+
+    /**
+     * Adds the time since a call to {@link #startTimer} to this frame's render time.
+     */
+    public static void addRenderTime(long start) {
+        if(enabled) frame[RENDER_NANOS] += System.nanoTime() - start;
+    }
+
+    /**
+     * Counts a slime that was not drawn because it was out of view.
+     */
+    public static void countCulled() {
+        if(enabled) frame[SLIMES_CULLED]++;
+    }
+
+    /**
+     * Counts the triangles drawn in a pass and the vertices emitted or uploaded for them, which are fewer than three per
+     * triangle when vertices are shared.
+     */
+    public static void countTriangles(Pass pass, int triangles, int vertices) {
+        if(!enabled) return;
+        frame[FIRST_PASS + 2 * pass.ordinal()] += triangles;
+        frame[FIRST_PASS + 2 * pass.ordinal() + 1] += vertices;
+    }
+
+    /**
+     * Counts a batch that made {@link SlimeRenderer#BUFFER} grow.
+     * @param capacityBefore - the buffer's capacity in bytes before the batch was built
+     * @param capacityAfter - the same, after
+     */
+    public static void countBufferGrowth(int capacityBefore, int capacityAfter) {
+        if(enabled && capacityAfter > capacityBefore) frame[BUFFER_GROWTHS]++;
+    }
+
+    /**
+     * Finishes recording a frame. Called once the slimes have been drawn, after {@link SlimeLOD#endFrame()}.
+     */
+    public static void endFrame() {
+        if(!enabled) return;
+        frame[SLIMES_RENDERED] = SlimeLOD.getSlimesLastFrame();
+        System.arraycopy(frame, 0, frameHistory[framesRecorded % HISTORY], 0, frame.length);
+        framesRecorded++;
+        Arrays.fill(frame, 0L);
+    }
+
+    /**
+     * Adds the metrics section to the F3 overlay.
+     */
+    public static void addDebugText(List<String> lines) {
+        if(!enabled || ticksRecorded == 0 || framesRecorded == 0) return;
+        final long[] lastTick = tickHistory[(ticksRecorded - 1) % HISTORY];
+        final long[] lastFrame = frameHistory[(framesRecorded - 1) % HISTORY];
+        lines.add(String.format("Jiggly Slimes physics: %.2f ms/tick (p50 %.2f, p99 %.2f), %d simulated", lastTick[PHYSICS_NANOS] / 1e6, percentile(tickHistory, ticksRecorded, PHYSICS_NANOS, 0.5) / 1e6, percentile(tickHistory, ticksRecorded, PHYSICS_NANOS, 0.99) / 1e6, lastTick[SLIMES_SIMULATED]));
+        lines.add(String.format("  Queries: %d block, %d block lookups, %d entity", lastTick[BLOCK_QUERIES], lastTick[BLOCK_LOOKUPS], lastTick[ENTITY_QUERIES]));
+        lines.add(String.format("Jiggly Slimes render: %.2f ms/frame (p50 %.2f, p99 %.2f), %d rendered, %d culled", lastFrame[RENDER_NANOS] / 1e6, percentile(frameHistory, framesRecorded, RENDER_NANOS, 0.5) / 1e6, percentile(frameHistory, framesRecorded, RENDER_NANOS, 0.99) / 1e6, lastFrame[SLIMES_RENDERED], lastFrame[SLIMES_CULLED]));
+        final StringBuilder passes = new StringBuilder("  Triangles:");
+        for(Pass pass : Pass.values()) {
+            passes.append(' ').append(pass.name().toLowerCase()).append(' ').append(lastFrame[FIRST_PASS + 2 * pass.ordinal()]);
+        }
+        lines.add(passes.toString());
+        lines.add("  Buffer growths: " + sum(frameHistory, framesRecorded, BUFFER_GROWTHS) + " in the last " + Math.min(framesRecorded, HISTORY) + " frames");
+    }
+
+    /**
+     * Writes the recorded ticks and frames to two CSV files in the game directory, oldest first, and tells the player
+     * where they went.
+     */
+    public static void dump() {
+        final Minecraft minecraft = Minecraft.getInstance();
+        final String message;
+        if(!enabled) {
+            message = "Jiggly Slimes metrics are off; turn on 'metrics' in the config first";
+        } else {
+            final File dir = new File(minecraft.gameDir, "jigglyslimes-metrics");
+            final String stamp = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date());
+            final File tickFile = new File(dir, stamp + "-ticks.csv");
+            final File frameFile = new File(dir, stamp + "-frames.csv");
+            if(!dir.isDirectory() && !dir.mkdirs()) {
+                message = "Could not create " + dir.getAbsolutePath();
+            } else if(writeCsv(tickFile, TICK_COLUMNS, tickHistory, ticksRecorded) && writeCsv(frameFile, FRAME_COLUMNS, frameHistory, framesRecorded)) {
+                message = "Dumped Jiggly Slimes metrics to " + tickFile.getName() + " and " + frameFile.getName();
+            } else {
+                message = "Could not write Jiggly Slimes metrics to " + dir.getAbsolutePath();
+            }
+        }
+        LOGGER.info(message);
+        if(minecraft.player != null) minecraft.player.sendStatusMessage(new StringTextComponent(message), false);
+    }
+
+    private static boolean writeCsv(File file, String[] columns, long[][] history, int recorded) {
+        try(PrintWriter wr = new PrintWriter(file)) {
+            wr.println("sample," + String.join(",", columns));
+            for(int sample = Math.max(recorded - HISTORY, 0); sample < recorded; sample++) {
+                wr.print(sample);
+                for(long value : history[sample % HISTORY]) {
+                    wr.print(',');
+                    wr.print(value);
+                }
+                wr.println();
+            }
+            return true;
+        } catch(FileNotFoundException e) {
+            LOGGER.warn("Could not write to " + file.getAbsolutePath());
+            return false;
+        }
+    }
+
+    private static double percentile(long[][] history, int recorded, int column, double fraction) {
+        final int n = Math.min(recorded, HISTORY);
+        final long[] values = percentileScratch;
+        for(int i = 0; i < n; i++) values[i] = history[i][column];
+        Arrays.sort(values, 0, n);
+        return values[Math.min((int) (fraction * n), n - 1)];
+    }
+
+    private static long sum(long[][] history, int recorded, int column) {
+        long sum = 0;
+        for(int i = Math.min(recorded, HISTORY) - 1; i >= 0; i--) sum += history[i][column];
+        return sum;
+    }
+}
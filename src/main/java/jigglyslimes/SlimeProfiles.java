@@ -0,0 +1,39 @@
+package jigglyslimes;
+
+import jigglyslimes.physics.SlimeProfile;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.monster.SlimeEntity;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The physics profiles of slimes, built the first time each entity type and size is seen.
+ */
+public final class SlimeProfiles {
+
+    private static final Map<EntityType<?>, SlimeProfile[]> BY_TYPE = new IdentityHashMap<>();
+
+    private SlimeProfiles() {}
+
+    /**
+     * @return the profile matching a slime's type and current size
+     */
+    public static SlimeProfile get(SlimeEntity entity) {
+        final int size = Math.max(entity.getSlimeSize(), 0);
+        SlimeProfile[] bySize = BY_TYPE.get(entity.getType());
+        if(bySize == null || size >= bySize.length) {
+            bySize = bySize == null ? new SlimeProfile[Math.max(size + 1, 8)] : Arrays.copyOf(bySize, Math.max(size + 1, bySize.length * 2));
+            BY_TYPE.put(entity.getType(), bySize);
+        }
+
+        SlimeProfile profile = bySize[size];
+        // Another mod could resize slimes without changing their size, so the dimensions are checked too.
+        if(profile == null || profile.width != entity.getWidth() || profile.height != entity.getHeight()) {
+            profile = new SlimeProfile(entity.getWidth(), entity.getHeight());
+            bySize[size] = profile;
+        }
+        return profile;
+    }
+}
@@ -2,12 +2,14 @@ package jigglyslimes;
 
 import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.blaze3d.vertex.IVertexBuilder;
-import jigglyslimes.math.MathUtil;
 import jigglyslimes.model.BoxMesh;
+import jigglyslimes.model.VertexStream;
+import jigglyslimes.physics.JigglyBitStore;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.IRenderTypeBuffer;
 import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.RenderTypeBuffers;
 import net.minecraft.client.renderer.WorldVertexBufferUploader;
 import net.minecraft.client.renderer.culling.ClippingHelper;
 import net.minecraft.client.renderer.entity.EntityRendererManager;
@@ -18,6 +20,7 @@ import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.monster.SlimeEntity;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.vector.Matrix4f;
@@ -30,15 +33,28 @@ import net.minecraftforge.client.event.RenderLivingEvent;
 import net.minecraftforge.client.event.RenderNameplateEvent;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.eventbus.api.Event;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.lwjgl.opengl.GL11;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 
 @OnlyIn(Dist.CLIENT)
 public class SlimeRenderer extends LivingRenderer<SlimeEntity, SlimeModel<SlimeEntity>> {
+    private static final Logger LOGGER = LogManager.getLogger();
     public static final BufferBuilder BUFFER = new BufferBuilder(256);
+    // Packs each slime's vertices for a bulk copy into BUFFER when they are built on the render thread
+    private static final VertexStream VERTICES = new VertexStream();
 
     private static final ResourceLocation SLIME_TEXTURES = new ResourceLocation("textures/entity/slime/slime.png");
+    private static final RenderType CUTOUT_RENDER_TYPE = JSRenderType.getEntityCutoutNoCullTris(SLIME_TEXTURES);
+    private static final RenderType TRANSLUCENT_RENDER_TYPE = JSRenderType.getEntityTranslucentTris(SLIME_TEXTURES);
     private static final int TEXTURE_WIDTH = 64;
     private static final int TEXTURE_HEIGHT = 32;
     private static BoxMesh INNER_BODY;
@@ -47,20 +63,54 @@ public class SlimeRenderer extends LivingRenderer<SlimeEntity, SlimeModel<SlimeE
     private static BoxMesh MOUTH;
     private static BoxMesh OUTER_BODY;
 
-    // Temporary vectors
-    private static final Vector3f[] lerpedJigglyBits = new Vector3f[8];
+    /**
+     * Asked for whenever a slime is queued, so that the buffer source it was rendered into draws the queue when it
+     * finishes its buffers: for the world, once every entity has been rendered, where vanilla draws its own entities.
+     */
+    private static final RenderType FLUSH_RENDER_TYPE = JSRenderType.getFinishHook("jigglyslimes_flush", SlimeRenderer::flushQueue);
+    // Slimes rendered this frame, drawn together by flushQueue()
+    private static final List<QueuedSlime> QUEUE = new ArrayList<>();
+    private static final Comparator<QueuedSlime> FARTHEST_FIRST = (a, b) -> Double.compare(b.distanceSq, a.distanceSq);
+    private static final Comparator<QueuedSlime> SMALLEST_FIRST = (a, b) -> Float.compare(a.screenSize, b.screenSize);
+    private static int queueSize;
+
+    // Builds the vertices of queued slimes when meshThreads > 1
+    private static ForkJoinPool meshPool;
 
     static {
         createModelComponents();
-        for(int i = 0; i < 8; i++) lerpedJigglyBits[i] = new Vector3f();
+    }
+
+    /**
+     * Gives {@link #FLUSH_RENDER_TYPE} a buffer of its own in the world's entity buffer source. That source only
+     * finishes such fixed buffers once every entity has been rendered, rather than whenever another render type is
+     * asked for. The field is made public by the mod's access transformer. Must be called on the render thread.
+     */
+    public static void registerFlushRenderType() {
+        final RenderTypeBuffers renderTypeBuffers = Minecraft.getInstance().getRenderTypeBuffers();
+        try {
+            renderTypeBuffers.fixedBuffers.put(FLUSH_RENDER_TYPE, new BufferBuilder(FLUSH_RENDER_TYPE.getBufferSize()));
+        } catch(UnsupportedOperationException e) {
+            LOGGER.error("Could not add the slime render type to the fixed entity buffers, which another mod may have replaced; slimes will be drawn after the world instead of with the other entities", e);
+        }
     }
 
     public static void createModelComponents() {
-        INNER_BODY = new BoxMesh(new Vector3f(0.125F, 0.125F, 0.125F), new Vector3f(0.875F, 0.875F, 0.875F), 0, 16, 6, 6, 6, JSConfig.meshResolution.getValue(), TEXTURE_WIDTH, TEXTURE_HEIGHT);
-        RIGHT_EYE = new BoxMesh(new Vector3f(0.09375F, 0.5F, 0.6875F), new Vector3f(0.34375F, 0.75F, 0.9375F), 32, 0, 2, 2, 2, Math.max(JSConfig.meshResolution.getValue() - 2, 0), TEXTURE_WIDTH, TEXTURE_HEIGHT);
-        LEFT_EYE = new BoxMesh(new Vector3f(0.65625F, 0.5F, 0.6875F), new Vector3f(0.90625F, 0.75F, 0.9375F), 32, 4, 2, 2, 2, Math.max(JSConfig.meshResolution.getValue() - 2, 0), TEXTURE_WIDTH, TEXTURE_HEIGHT);
-        MOUTH = new BoxMesh(new Vector3f(0.5F, 0.25F, 0.8125F), new Vector3f(0.625F, 0.375F, 0.9375F), 32, 8, 1, 1, 1, Math.max(JSConfig.meshResolution.getValue() - 3, 0), TEXTURE_WIDTH, TEXTURE_HEIGHT);
-        OUTER_BODY = new BoxMesh(new Vector3f(0.0F, 0.0F, 0.0F), new Vector3f(1.0F, 1.0F, 1.0F), 0, 0, 8, 8, 8, JSConfig.meshResolution.getValue(), TEXTURE_WIDTH, TEXTURE_HEIGHT);
+        if(INNER_BODY != null) {
+            INNER_BODY.deleteBuffers();
+            RIGHT_EYE.deleteBuffers();
+            LEFT_EYE.deleteBuffers();
+            MOUTH.deleteBuffers();
+            OUTER_BODY.deleteBuffers();
+        }
+        final int meshResolution = JSConfig.meshResolution.getValue();
+        final float tolerance = JSConfig.meshTolerance.getValue().floatValue();
+        INNER_BODY = new BoxMesh(new Vector3f(0.125F, 0.125F, 0.125F), new Vector3f(0.875F, 0.875F, 0.875F), 0, 16, 6, 6, 6, meshResolution, TEXTURE_WIDTH, TEXTURE_HEIGHT, tolerance);
+        RIGHT_EYE = new BoxMesh(new Vector3f(0.09375F, 0.5F, 0.6875F), new Vector3f(0.34375F, 0.75F, 0.9375F), 32, 0, 2, 2, 2, Math.max(meshResolution - 2, 0), TEXTURE_WIDTH, TEXTURE_HEIGHT, tolerance);
+        LEFT_EYE = new BoxMesh(new Vector3f(0.65625F, 0.5F, 0.6875F), new Vector3f(0.90625F, 0.75F, 0.9375F), 32, 4, 2, 2, 2, Math.max(meshResolution - 2, 0), TEXTURE_WIDTH, TEXTURE_HEIGHT, tolerance);
+        MOUTH = new BoxMesh(new Vector3f(0.5F, 0.25F, 0.8125F), new Vector3f(0.625F, 0.375F, 0.9375F), 32, 8, 1, 1, 1, Math.max(meshResolution - 3, 0), TEXTURE_WIDTH, TEXTURE_HEIGHT, tolerance);
+        OUTER_BODY = new BoxMesh(new Vector3f(0.0F, 0.0F, 0.0F), new Vector3f(1.0F, 1.0F, 1.0F), 0, 0, 8, 8, 8, meshResolution, TEXTURE_WIDTH, TEXTURE_HEIGHT, tolerance);
+        SlimeLOD.setMaxLevel(meshResolution);
     }
 
     public SlimeRenderer(EntityRendererManager renderManagerIn) {
@@ -81,33 +131,54 @@ public class SlimeRenderer extends LivingRenderer<SlimeEntity, SlimeModel<SlimeE
         return super.canRenderName(entity) && (entity.getAlwaysRenderNameTagForRender() || entity.hasCustomName() && entity == this.renderManager.pointedEntity);
     }
 
+    /**
+     * Culls slimes by bounds that cover their jiggly bits rather than by their bounding box, and also culls slimes that
+     * {@link SlimeVisibility} finds hidden behind opaque chunk sections.
+     */
     @Override
     public boolean shouldRender(@Nonnull SlimeEntity livingEntityIn, @Nonnull ClippingHelper camera, double camX, double camY, double camZ) {
-        if(super.shouldRender(livingEntityIn, camera, camX, camY, camZ)) {
-            return true;
-        } else {
-            Entity entity = livingEntityIn.getLeashHolder();
-            return entity != null && camera.isBoundingBoxInFrustum(entity.getRenderBoundingBox());
+        if(livingEntityIn.isInRangeToRender3d(camX, camY, camZ)) {
+            final int slot = SlimeJigglyBits.get(livingEntityIn).slot;
+            final AxisAlignedBB bounds = SlimeVisibility.getDeformedBounds(slot, livingEntityIn);
+            if((livingEntityIn.ignoreFrustumCheck || camera.isBoundingBoxInFrustum(bounds)) && !SlimeVisibility.isOccluded(slot, livingEntityIn.world, bounds, camX, camY, camZ)) {
+                return true;
+            }
         }
+
+        Entity entity = livingEntityIn.getLeashHolder();
+        final boolean leashVisible = entity != null && camera.isBoundingBoxInFrustum(entity.getRenderBoundingBox());
+        if(!leashVisible) SlimeMetrics.countCulled();
+        return leashVisible;
     }
 
     @Override
     public void render(SlimeEntity entity, float entityYaw, float partialTicks, @Nonnull MatrixStack matrixStack, @Nonnull IRenderTypeBuffer renderTypeBuffer, int packedLightIn) {
+        final long start = SlimeMetrics.startTimer();
         this.shadowSize = 0.25F * entity.getSlimeSize();
 
         if(!MinecraftForge.EVENT_BUS.post(new RenderLivingEvent.Pre<>(entity, this, partialTicks, matrixStack, renderTypeBuffer, packedLightIn))) {
-            if(!SlimeJigglyBits.BY_ENTITY.containsKey(entity)) {
-                SlimeJigglyBits.BY_ENTITY.put(entity, new SlimeJigglyBits(entity.getPositionVec()));
-            }
-            SlimeJigglyBits jigglyBits = SlimeJigglyBits.BY_ENTITY.get(entity);
+            final JigglyBitStore<SlimeJigglyBits> store = SlimeJigglyBits.STORE;
+            final int slot = SlimeJigglyBits.get(entity).slot;
+            final int firstBit = JigglyBitStore.firstBit(slot);
 
+            // The next queue entry is filled in here, and only kept if the slime is queued below
+            if(queueSize == QUEUE.size()) QUEUE.add(new QueuedSlime());
+            final QueuedSlime queued = QUEUE.get(queueSize);
+            final Vector3f[] corners = queued.corners;
             for(int i = 0; i < 8; i++) {
-                MathUtil.lerp(jigglyBits.prevPos[i], jigglyBits.pos[i], partialTicks, lerpedJigglyBits[i]);
+                final int b = firstBit + i;
+                corners[i].set(MathHelper.lerp(partialTicks, store.prevPosX[b], store.posX[b]), MathHelper.lerp(partialTicks, store.prevPosY[b], store.posY[b]), MathHelper.lerp(partialTicks, store.prevPosZ[b], store.posZ[b]));
             }
+            queued.deform();
 
             final Minecraft minecraft = Minecraft.getInstance();
-            // resReduction = max(log2(distance) - 4, 0)
-            final int resReduction = minecraft.player == null ? 0 : Math.max((MathHelper.log2((int) entity.getDistanceSq(minecraft.player)) >> 1) - 4, 0);
+            final Vector3d cameraPos = this.renderManager.info.getProjectedView();
+            final double distanceSq = entity.getDistanceSq(cameraPos.x, cameraPos.y, cameraPos.z);
+            final float halfWidth = 0.5F * entity.getWidth();
+            final float screenSize = SlimeLOD.getScreenSize(Math.sqrt(2.0F * halfWidth * halfWidth + 0.25F * entity.getHeight() * entity.getHeight()), distanceSq);
+            final int resReduction = SlimeLOD.selectLevel(slot, screenSize);
+            SlimeLOD.countSlime();
+            PhysicsLOD.markRendered(slot);
             final boolean entityIsVisible = this.isVisible(entity);
             final int packedOverlay = getPackedOverlay(entity, 0.0F);
 
@@ -116,29 +187,22 @@ public class SlimeRenderer extends LivingRenderer<SlimeEntity, SlimeModel<SlimeE
                 // TODO - Why is this here?
                 renderType = RenderType.getItemEntityTranslucentCull(getEntityTexture(entity));
                 IVertexBuilder vertexBuilder = renderTypeBuffer.getBuffer(renderType);
-                renderOpaqueModelComponents(matrixStack.getLast(), vertexBuilder, packedLightIn, packedOverlay, 0.15F, resReduction);
-            } else if(entityIsVisible) {
-                renderType = JSRenderType.getEntityCutoutNoCullTris(getEntityTexture(entity));
-                BUFFER.begin(GL11.GL_TRIANGLES, DefaultVertexFormats.ENTITY);
-                renderOpaqueModelComponents(matrixStack.getLast(), BUFFER, packedLightIn, packedOverlay, 1.0F, resReduction);
-                BUFFER.finishDrawing();
-                renderType.setupRenderState();
-                WorldVertexBufferUploader.draw(BUFFER);
-                renderType.clearRenderState();
-            } else if(minecraft.isEntityGlowing(entity)) {
+                renderOpaqueModelComponents(matrixStack.getLast(), vertexBuilder, packedLightIn, packedOverlay, 0.15F, resReduction, JSConfig.smoothShading.getValue(), queued);
+                final int triangles = getTriangleCount(resReduction, true, false, false, queued);
+                SlimeLOD.countTriangles(triangles);
+                SlimeMetrics.countTriangles(SlimeMetrics.Pass.INVISIBLE, triangles, 3 * triangles);
+            } else if(!entityIsVisible && minecraft.isEntityGlowing(entity)) {
                 // TODO - Why is this here?
                 renderType = RenderType.getOutline(getEntityTexture(entity));
                 IVertexBuilder vertexBuilder = renderTypeBuffer.getBuffer(renderType);
-                renderOpaqueModelComponents(matrixStack.getLast(), vertexBuilder, packedLightIn, packedOverlay, 1.0F, resReduction);
+                renderOpaqueModelComponents(matrixStack.getLast(), vertexBuilder, packedLightIn, packedOverlay, 1.0F, resReduction, JSConfig.smoothShading.getValue(), queued);
+                final int triangles = getTriangleCount(resReduction, true, false, false, queued);
+                SlimeLOD.countTriangles(triangles);
+                SlimeMetrics.countTriangles(SlimeMetrics.Pass.OUTLINE, triangles, 3 * triangles);
             }
-            if(!entity.isInvisible()) {
-                renderType = JSRenderType.getEntityTranslucentTris(getEntityTexture(entity));
-                BUFFER.begin(GL11.GL_TRIANGLES, DefaultVertexFormats.ENTITY);
-                renderTranslucentModelComponents(matrixStack.getLast(), BUFFER, packedLightIn, packedOverlay, resReduction);
-                BUFFER.finishDrawing();
-                renderType.setupRenderState();
-                WorldVertexBufferUploader.draw(BUFFER);
-                renderType.clearRenderState();
+            if(entityIsVisible || !entity.isInvisible()) {
+                queue(queued, matrixStack.getLast(), packedLightIn, packedOverlay, resReduction, entityIsVisible, !entity.isInvisible(), distanceSq, screenSize);
+                renderTypeBuffer.getBuffer(FLUSH_RENDER_TYPE);
             }
 
             RenderNameplateEvent renderNameplateEvent = new RenderNameplateEvent(entity, entity.getDisplayName(), this, matrixStack, renderTypeBuffer, packedLightIn, partialTicks);
@@ -154,6 +218,7 @@ public class SlimeRenderer extends LivingRenderer<SlimeEntity, SlimeModel<SlimeE
         if(leashHolder != null) {
             this.renderLeash(entity, partialTicks, matrixStack, renderTypeBuffer, leashHolder);
         }
+        SlimeMetrics.addRenderTime(start);
     }
 
     private <E extends Entity> void renderLeash(SlimeEntity entityLivingIn, float partialTicks, MatrixStack matrixStack, IRenderTypeBuffer renderTypeBuffer, E leashHolder) {
@@ -187,14 +252,333 @@ public class SlimeRenderer extends LivingRenderer<SlimeEntity, SlimeModel<SlimeE
         matrixStack.pop();
     }
 
-    private static void renderOpaqueModelComponents(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float alpha, int resReduction) {
-        INNER_BODY.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, lerpedJigglyBits);
-        RIGHT_EYE.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, lerpedJigglyBits);
-        LEFT_EYE.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, lerpedJigglyBits);
-        MOUTH.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, lerpedJigglyBits);
+    /**
+     * Keeps the next queue entry, whose corners have already been set, for drawing at the end of the entity pass. With
+     * more than one mesh thread, its vertices start being built straight away, while the rest of the entity pass goes
+     * on.
+     */
+    private static void queue(QueuedSlime queued, MatrixStack.Entry lastMatrixEntry, int packedLightIn, int packedOverlayIn, int resReduction, boolean opaque, boolean translucent, double distanceSq, float screenSize) {
+        queueSize++;
+        final MatrixStack.Entry entry = queued.matrixStack.getLast();
+        entry.getMatrix().setIdentity();
+        entry.getMatrix().mul(lastMatrixEntry.getMatrix());
+        entry.getNormal().setIdentity();
+        entry.getNormal().mul(lastMatrixEntry.getNormal());
+        queued.packedLight = packedLightIn;
+        queued.packedOverlay = packedOverlayIn;
+        queued.resReduction = resReduction;
+        queued.opaque = opaque;
+        queued.translucent = translucent;
+        queued.distanceSq = distanceSq;
+        queued.screenSize = screenSize;
+        queued.smoothShading = JSConfig.smoothShading.getValue();
+        if(buildsOffThread()) startBuild(queued);
+    }
+
+    /**
+     * @return whether queued slimes have their vertices built on mesh threads, to be copied into {@link #BUFFER}
+     */
+    private static boolean buildsOffThread() {
+        return JSConfig.meshThreads.getValue() > 1 && !JSConfig.gpuMeshBuffers.getValue();
+    }
+
+    /**
+     * Starts building a queued slime's vertices at its current resolution reduction on a mesh thread. Any build
+     * already started must have finished.
+     */
+    private static void startBuild(QueuedSlime queued) {
+        // The face steps at this level are picked here, so that the mesh thread only reads the slime's deformations
+        getTriangleCount(queued.resReduction, queued.opaque, queued.translucent, false, queued);
+        queued.builtLevel = queued.resReduction;
+        queued.build.reinitialize();
+        queued.building = true;
+        getMeshPool(JSConfig.meshThreads.getValue()).execute(queued.build);
+    }
+
+    /**
+     * Waits for a queued slime's vertices to finish building, if they are being built.
+     */
+    private static void finishBuild(QueuedSlime queued) {
+        if(queued.building) {
+            queued.building = false;
+            queued.build.join();
+        }
+    }
+
+    private static ForkJoinPool getMeshPool(int numThreads) {
+        if(meshPool == null || meshPool.getParallelism() != numThreads) {
+            if(meshPool != null) meshPool.shutdown();
+            meshPool = new ForkJoinPool(numThreads, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("Jiggly Slimes Mesh #" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return meshPool;
+    }
+
+    /**
+     * Lowers the detail of queued slimes until their triangles fit in the configured budget, one level at a time and
+     * smallest on screen first, so that large and close slimes keep their detail the longest.
+     */
+    private static void applyTriangleBudget() {
+        final int budget = JSConfig.triangleBudget.getValue();
+        if(budget <= 0) return;
+
+        final boolean buffered = JSConfig.gpuMeshBuffers.getValue();
+        int total = 0;
+        for(int i = 0; i < queueSize; i++) {
+            final QueuedSlime queued = QUEUE.get(i);
+            total += getTriangleCount(queued.resReduction, queued.opaque, queued.translucent, buffered, queued);
+        }
+        if(total <= budget) return;
+
+        QUEUE.subList(0, queueSize).sort(SMALLEST_FIRST);
+        final int maxLevel = SlimeLOD.getMaxLevel();
+        boolean reduced = true;
+        while(total > budget && reduced) {
+            reduced = false;
+            for(int i = 0; i < queueSize && total > budget; i++) {
+                final QueuedSlime queued = QUEUE.get(i);
+                if(queued.resReduction < maxLevel) {
+                    total -= getTriangleCount(queued.resReduction, queued.opaque, queued.translucent, buffered, queued);
+                    queued.resReduction++;
+                    total += getTriangleCount(queued.resReduction, queued.opaque, queued.translucent, buffered, queued);
+                    reduced = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws every slime queued since the last flush: one draw for the opaque parts of all of them, then one for their
+     * outer bodies, which are sorted back to front so that overlapping slimes blend correctly. Called when the entity
+     * buffers are finished, so that slimes are drawn with the entity pass's fog and framebuffer, before translucent
+     * terrain, water and particles.
+     */
+    public static void flushQueue() {
+        if(queueSize == 0) return;
+
+        final long start = SlimeMetrics.startTimer();
+        applyTriangleBudget();
+        final boolean offThread = buildsOffThread();
+        if(offThread) {
+            // Slimes that lost detail to the budget are built again at their new level
+            for(int i = 0; i < queueSize; i++) {
+                final QueuedSlime queued = QUEUE.get(i);
+                if(!queued.building || queued.builtLevel != queued.resReduction) {
+                    finishBuild(queued);
+                    startBuild(queued);
+                }
+            }
+        }
+        final boolean gpuMeshBuffers = JSConfig.gpuMeshBuffers.getValue();
+        int cutoutTriangles = 0;
+        int translucentTriangles = 0;
+        for(int i = 0; i < queueSize; i++) {
+            final QueuedSlime queued = QUEUE.get(i);
+            if(queued.opaque) cutoutTriangles += getTriangleCount(queued.resReduction, true, false, gpuMeshBuffers, queued);
+            if(queued.translucent) translucentTriangles += getTriangleCount(queued.resReduction, false, true, gpuMeshBuffers, queued);
+        }
+        SlimeLOD.countTriangles(cutoutTriangles + translucentTriangles);
+
+        // Vertices are only shared between triangles when drawn from the GPU buffers
+        int cutoutVertices = 0;
+        int translucentVertices = 0;
+        if(gpuMeshBuffers) {
+            CUTOUT_RENDER_TYPE.setupRenderState();
+            for(int i = 0; i < queueSize; i++) {
+                final QueuedSlime queued = QUEUE.get(i);
+                if(queued.opaque) cutoutVertices += renderOpaqueModelComponentsBuffered(queued.matrixStack.getLast(), queued.packedLight, queued.packedOverlay, queued.resReduction, queued.corners);
+            }
+            CUTOUT_RENDER_TYPE.clearRenderState();
+        } else {
+            final int capacity = getBufferCapacity();
+            BUFFER.begin(GL11.GL_TRIANGLES, DefaultVertexFormats.ENTITY);
+            for(int i = 0; i < queueSize; i++) {
+                final QueuedSlime queued = QUEUE.get(i);
+                if(!queued.opaque) continue;
+                if(offThread) {
+                    finishBuild(queued);
+                    queued.opaqueVertices.copyTo(BUFFER);
+                    cutoutVertices += queued.opaqueVertices.getVertexCount();
+                } else {
+                    VERTICES.reset();
+                    renderOpaqueModelComponents(queued.matrixStack.getLast(), VERTICES, queued.packedLight, queued.packedOverlay, 1.0F, queued.resReduction, queued.smoothShading, queued);
+                    VERTICES.copyTo(BUFFER);
+                    cutoutVertices += VERTICES.getVertexCount();
+                }
+            }
+            BUFFER.finishDrawing();
+            SlimeMetrics.countBufferGrowth(capacity, getBufferCapacity());
+            CUTOUT_RENDER_TYPE.setupRenderState();
+            WorldVertexBufferUploader.draw(BUFFER);
+            CUTOUT_RENDER_TYPE.clearRenderState();
+        }
+
+        QUEUE.subList(0, queueSize).sort(FARTHEST_FIRST);
+        if(gpuMeshBuffers) {
+            TRANSLUCENT_RENDER_TYPE.setupRenderState();
+            for(int i = 0; i < queueSize; i++) {
+                final QueuedSlime queued = QUEUE.get(i);
+                if(queued.translucent) translucentVertices += OUTER_BODY.renderBuffered(queued.matrixStack.getLast(), queued.packedLight, queued.packedOverlay, 1.0F, 1.0F, 1.0F, 1.0F, queued.resReduction, queued.corners);
+            }
+            TRANSLUCENT_RENDER_TYPE.clearRenderState();
+        } else {
+            final int capacity = getBufferCapacity();
+            BUFFER.begin(GL11.GL_TRIANGLES, DefaultVertexFormats.ENTITY);
+            for(int i = 0; i < queueSize; i++) {
+                final QueuedSlime queued = QUEUE.get(i);
+                if(!queued.translucent) continue;
+                if(offThread) {
+                    finishBuild(queued);
+                    queued.translucentVertices.copyTo(BUFFER);
+                    translucentVertices += queued.translucentVertices.getVertexCount();
+                } else {
+                    VERTICES.reset();
+                    renderTranslucentModelComponents(queued.matrixStack.getLast(), VERTICES, queued.packedLight, queued.packedOverlay, queued.resReduction, queued.smoothShading, queued);
+                    VERTICES.copyTo(BUFFER);
+                    translucentVertices += VERTICES.getVertexCount();
+                }
+            }
+            BUFFER.finishDrawing();
+            SlimeMetrics.countBufferGrowth(capacity, getBufferCapacity());
+            TRANSLUCENT_RENDER_TYPE.setupRenderState();
+            WorldVertexBufferUploader.draw(BUFFER);
+            TRANSLUCENT_RENDER_TYPE.clearRenderState();
+        }
+
+        SlimeMetrics.countTriangles(SlimeMetrics.Pass.CUTOUT, cutoutTriangles, cutoutVertices);
+        SlimeMetrics.countTriangles(SlimeMetrics.Pass.TRANSLUCENT, translucentTriangles, translucentVertices);
+
+        queueSize = 0;
+        SlimeMetrics.addRenderTime(start);
+    }
+
+    /**
+     * @return the bytes {@link #BUFFER} can hold before it has to grow, read from the field made public by the mod's
+     * access transformer
+     */
+    private static int getBufferCapacity() {
+        return BUFFER.byteBuffer.capacity();
+    }
+
+    /**
+     * Closes the frame's statistics once the world has been rendered. Anything still queued, because the buffer source
+     * it was rendered into was never finished, is drawn first rather than lost.
+     */
+    public static void endFrame() {
+        flushQueue();
+        SlimeLOD.endFrame();
+        SlimeMetrics.endFrame();
+    }
+
+    /**
+     * Discards anything queued without drawing it, e.g. when the world is unloaded mid-frame.
+     */
+    public static void clearQueue() {
+        for(int i = 0; i < queueSize; i++) finishBuild(QUEUE.get(i));
+        queueSize = 0;
     }
 
-    private static void renderTranslucentModelComponents(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, int resReduction) {
-        OUTER_BODY.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, lerpedJigglyBits);
+    /**
+     * @return the number of triangles a slime is drawn with at a resolution reduction
+     * @param buffered - whether it is drawn from GPU buffers, which always use the full resolution of the reduction
+     *                 rather than adapting to how deformed each face is
+     */
+    private static int getTriangleCount(int resReduction, boolean opaque, boolean translucent, boolean buffered, QueuedSlime slime) {
+        int count = 0;
+        if(opaque) {
+            count += buffered
+                    ? INNER_BODY.getTriangleCount(resReduction) + RIGHT_EYE.getTriangleCount(resReduction) + LEFT_EYE.getTriangleCount(resReduction) + MOUTH.getTriangleCount(resReduction)
+                    : INNER_BODY.getTriangleCount(resReduction, slime.innerBody) + RIGHT_EYE.getTriangleCount(resReduction, slime.rightEye) + LEFT_EYE.getTriangleCount(resReduction, slime.leftEye) + MOUTH.getTriangleCount(resReduction, slime.mouth);
+        }
+        if(translucent) count += buffered ? OUTER_BODY.getTriangleCount(resReduction) : OUTER_BODY.getTriangleCount(resReduction, slime.outerBody);
+        return count;
+    }
+
+    private static void renderOpaqueModelComponents(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float alpha, int resReduction, boolean smoothShading, QueuedSlime slime) {
+        INNER_BODY.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, smoothShading, slime.innerBody);
+        RIGHT_EYE.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, smoothShading, slime.rightEye);
+        LEFT_EYE.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, smoothShading, slime.leftEye);
+        MOUTH.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, alpha, resReduction, smoothShading, slime.mouth);
+    }
+
+    /**
+     * @return the number of vertices uploaded
+     */
+    private static int renderOpaqueModelComponentsBuffered(MatrixStack.Entry lastMatrixEntry, int packedLightIn, int packedOverlayIn, int resReduction, Vector3f[] corners) {
+        return INNER_BODY.renderBuffered(lastMatrixEntry, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, corners)
+                + RIGHT_EYE.renderBuffered(lastMatrixEntry, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, corners)
+                + LEFT_EYE.renderBuffered(lastMatrixEntry, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, corners)
+                + MOUTH.renderBuffered(lastMatrixEntry, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, corners);
+    }
+
+    private static void renderTranslucentModelComponents(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, int resReduction, boolean smoothShading, QueuedSlime slime) {
+        OUTER_BODY.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, 1.0F, 1.0F, 1.0F, 1.0F, resReduction, smoothShading, slime.outerBody);
+    }
+
+    /**
+     * A slime waiting to be drawn at the end of the entity pass. Instances are pooled and overwritten each frame. When
+     * built on a mesh thread, its vertices are kept in its own streams until they are copied into {@link #BUFFER}; the
+     * flush waits for every build before the entry can be reused.
+     */
+    private static class QueuedSlime {
+        private final MatrixStack matrixStack = new MatrixStack();
+        private final Vector3f[] corners = new Vector3f[8];
+        private int packedLight;
+        private int packedOverlay;
+        private int resReduction;
+        private boolean opaque;
+        private boolean translucent;
+        private boolean smoothShading;
+        private double distanceSq;
+        private float screenSize;
+
+        // Each box deformed by the corners, shared by every pass that draws or counts this slime in the frame
+        private final BoxMesh.Deformation innerBody = new BoxMesh.Deformation();
+        private final BoxMesh.Deformation rightEye = new BoxMesh.Deformation();
+        private final BoxMesh.Deformation leftEye = new BoxMesh.Deformation();
+        private final BoxMesh.Deformation mouth = new BoxMesh.Deformation();
+        private final BoxMesh.Deformation outerBody = new BoxMesh.Deformation();
+
+        private final VertexStream opaqueVertices = new VertexStream();
+        private final VertexStream translucentVertices = new VertexStream();
+        // The resolution reduction the streams are being built at, and whether a build has been started and not waited for
+        private int builtLevel;
+        private boolean building;
+        private final RecursiveAction build = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                buildVertices();
+            }
+        };
+
+        private QueuedSlime() {
+            for(int i = 0; i < 8; i++) corners[i] = new Vector3f();
+        }
+
+        /**
+         * Deforms every box of the model by this slime's corners, which must have just been set.
+         */
+        private void deform() {
+            INNER_BODY.deform(innerBody, corners);
+            RIGHT_EYE.deform(rightEye, corners);
+            LEFT_EYE.deform(leftEye, corners);
+            MOUTH.deform(mouth, corners);
+            OUTER_BODY.deform(outerBody, corners);
+        }
+
+        /**
+         * Builds this slime's vertices into its streams. Runs on a mesh thread, and only reads this entry and the
+         * model components.
+         */
+        private void buildVertices() {
+            final MatrixStack.Entry entry = matrixStack.getLast();
+            opaqueVertices.reset();
+            if(opaque) renderOpaqueModelComponents(entry, opaqueVertices, packedLight, packedOverlay, 1.0F, builtLevel, smoothShading, this);
+            translucentVertices.reset();
+            if(translucent) renderTranslucentModelComponents(entry, translucentVertices, packedLight, packedOverlay, builtLevel, smoothShading, this);
+        }
     }
 }
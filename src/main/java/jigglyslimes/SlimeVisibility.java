@@ -0,0 +1,248 @@
+package jigglyslimes;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import jigglyslimes.physics.JigglyBitStore;
+import net.minecraft.entity.monster.SlimeEntity;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.SectionPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether slimes could be seen. Slimes are tested against the view frustum with bounds that cover their jiggly
+ * bits, which can stretch well outside the entity's bounding box. Slimes in the frustum are then hidden if every line
+ * of sight from the camera to them passes through a chunk section filled entirely with opaque blocks. That is coarse,
+ * so a slime behind a thin wall still counts as visible, but it catches slimes deep underground. The client is not told
+ * when blocks change, so each section is scanned again once what is known about it gets old, and a tunnel dug towards
+ * a slime shows it within a second or so. Hidden slimes stop simulating too; see {@link PhysicsLOD}. Only use from the
+ * client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class SlimeVisibility {
+
+    /** How often the lines of sight of a slime found visible are traced again, in ticks. */
+    private static final int RECHECK_TICKS = 5;
+    /** A slime found hidden longer ago than this, e.g. because it has since left the frustum, no longer counts as hidden. */
+    private static final int STALE_TICKS = 20;
+    /** The most chunk sections to scan each tick; a scan can take 4096 block lookups. */
+    private static final int SECTION_SCANS_PER_TICK = 16;
+    /** How long a section scan is trusted for, in ticks; older ones are scanned again as the tick's budget allows. */
+    private static final int SECTION_RESCAN_TICKS = 20;
+    private static final int MAX_CACHED_SECTIONS = 16384;
+    /** A line of sight never crosses more sections than this, however far away the slime is. */
+    private static final int MAX_SECTIONS_PER_RAY = 64;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte OPEN = 1;
+    private static final byte OPAQUE = 2;
+
+    // Whether each chunk section is filled with opaque blocks, in the low two bits, and the tick it was scanned in, in
+    // the rest, keyed by packed section position
+    private static final Long2LongOpenHashMap SECTIONS = new Long2LongOpenHashMap();
+    private static long scanBudgetTime;
+    private static int scansLeft;
+
+    private static boolean[] occluded = new boolean[64];
+    private static long[] checkedTime = new long[64];
+
+    private static final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+
+    private SlimeVisibility() {}
+
+    /**
+     * Forgets what is known about a slot, so that its next slime starts visible.
+     */
+    public static void reset(int slot) {
+        if(slot >= occluded.length) {
+            final int length = Math.max(occluded.length * 2, slot + 1);
+            occluded = Arrays.copyOf(occluded, length);
+            checkedTime = Arrays.copyOf(checkedTime, length);
+        }
+        occluded[slot] = false;
+        checkedTime[slot] = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * @return bounds that contain a slime's jiggly bits and its bounding box, wherever they are drawn between the last
+     * tick and this one
+     */
+    public static AxisAlignedBB getDeformedBounds(int slot, SlimeEntity entity) {
+        final JigglyBitStore<SlimeJigglyBits> s = SlimeJigglyBits.STORE;
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        float minX = 0.0F, minY = 0.0F, minZ = 0.0F, maxX = 0.0F, maxY = 0.0F, maxZ = 0.0F;
+        for(int b = first; b < last; b++) {
+            minX = Math.min(minX, Math.min(s.posX[b], s.prevPosX[b]));
+            minY = Math.min(minY, Math.min(s.posY[b], s.prevPosY[b]));
+            minZ = Math.min(minZ, Math.min(s.posZ[b], s.prevPosZ[b]));
+            maxX = Math.max(maxX, Math.max(s.posX[b], s.prevPosX[b]));
+            maxY = Math.max(maxY, Math.max(s.posY[b], s.prevPosY[b]));
+            maxZ = Math.max(maxZ, Math.max(s.posZ[b], s.prevPosZ[b]));
+        }
+
+        // As in vanilla, the bounding box is grown a little to leave room for shadows and the like
+        final AxisAlignedBB box = entity.getRenderBoundingBox();
+        return new AxisAlignedBB(
+                Math.min(box.minX - 0.5, Math.min(entity.lastTickPosX, entity.getPosX()) + minX),
+                Math.min(box.minY - 0.5, Math.min(entity.lastTickPosY, entity.getPosY()) + minY),
+                Math.min(box.minZ - 0.5, Math.min(entity.lastTickPosZ, entity.getPosZ()) + minZ),
+                Math.max(box.maxX + 0.5, Math.max(entity.lastTickPosX, entity.getPosX()) + maxX),
+                Math.max(box.maxY + 0.5, Math.max(entity.lastTickPosY, entity.getPosY()) + maxY),
+                Math.max(box.maxZ + 0.5, Math.max(entity.lastTickPosZ, entity.getPosZ()) + maxZ));
+    }
+
+    /**
+     * @return whether every line of sight from the camera to a slime is blocked by an opaque chunk section. A slime
+     * found hidden is traced again on every call, so that it shows up as soon as the camera can see it, however the
+     * camera moved. A slime found visible is only traced again every {@value #RECHECK_TICKS} ticks; until then it is
+     * at worst drawn while hidden.
+     */
+    public static boolean isOccluded(int slot, World world, AxisAlignedBB bounds, double camX, double camY, double camZ) {
+        final long time = world.getGameTime();
+        if(occluded[slot] || time - checkedTime[slot] >= RECHECK_TICKS || time < checkedTime[slot]) {
+            if(time != scanBudgetTime) {
+                scanBudgetTime = time;
+                scansLeft = SECTION_SCANS_PER_TICK;
+            }
+            occluded[slot] = areAllRaysBlocked(world, bounds, camX, camY, camZ);
+            checkedTime[slot] = time;
+        }
+        return occluded[slot];
+    }
+
+    /**
+     * @return whether a slime was found hidden recently, so that it need not be simulated
+     */
+    public static boolean isHidden(int slot, long time) {
+        return occluded[slot] && time - checkedTime[slot] <= STALE_TICKS;
+    }
+
+    /**
+     * Forgets what is known about every section of a chunk, e.g. because it was loaded or unloaded.
+     */
+    public static void invalidateChunk(IWorld world, int chunkX, int chunkZ) {
+        final int numSections = world.getHeight() >> 4;
+        for(int sectionY = 0; sectionY < numSections; sectionY++) {
+            SECTIONS.remove(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+    }
+
+    public static void clear() {
+        SECTIONS.clear();
+    }
+
+    /**
+     * Traces lines of sight from the camera to the centre and corners of the bounds.
+     */
+    private static boolean areAllRaysBlocked(World world, AxisAlignedBB bounds, double camX, double camY, double camZ) {
+        if(isRayBlocked(world, camX, camY, camZ, (bounds.minX + bounds.maxX) / 2, (bounds.minY + bounds.maxY) / 2, (bounds.minZ + bounds.maxZ) / 2)) {
+            for(int corner = 0; corner < 8; corner++) {
+                final double x = (corner & 0x04) == 0 ? bounds.minX : bounds.maxX;
+                final double y = (corner & 0x02) == 0 ? bounds.minY : bounds.maxY;
+                final double z = (corner & 0x01) == 0 ? bounds.minZ : bounds.maxZ;
+                if(!isRayBlocked(world, camX, camY, camZ, x, y, z)) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Walks the chunk sections between two points, skipping the ones containing either end.
+     * @return whether any of them is opaque
+     */
+    private static boolean isRayBlocked(World world, double x0, double y0, double z0, double x1, double y1, double z1) {
+        int sectionX = MathHelper.floor(x0) >> 4;
+        int sectionY = MathHelper.floor(y0) >> 4;
+        int sectionZ = MathHelper.floor(z0) >> 4;
+        final int endX = MathHelper.floor(x1) >> 4;
+        final int endY = MathHelper.floor(y1) >> 4;
+        final int endZ = MathHelper.floor(z1) >> 4;
+        if(sectionX == endX && sectionY == endY && sectionZ == endZ) return false;
+
+        final double dx = x1 - x0;
+        final double dy = y1 - y0;
+        final double dz = z1 - z0;
+        final int stepX = dx > 0 ? 1 : -1;
+        final int stepY = dy > 0 ? 1 : -1;
+        final int stepZ = dz > 0 ? 1 : -1;
+        // The fraction of the ray covered when crossing one section, and when reaching the next section boundary
+        final double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : 16.0 / Math.abs(dx);
+        final double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : 16.0 / Math.abs(dy);
+        final double deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : 16.0 / Math.abs(dz);
+        double nextX = dx == 0 ? Double.POSITIVE_INFINITY : (dx > 0 ? (sectionX + 1) * 16 - x0 : x0 - sectionX * 16) / Math.abs(dx);
+        double nextY = dy == 0 ? Double.POSITIVE_INFINITY : (dy > 0 ? (sectionY + 1) * 16 - y0 : y0 - sectionY * 16) / Math.abs(dy);
+        double nextZ = dz == 0 ? Double.POSITIVE_INFINITY : (dz > 0 ? (sectionZ + 1) * 16 - z0 : z0 - sectionZ * 16) / Math.abs(dz);
+
+        for(int i = 0; i < MAX_SECTIONS_PER_RAY; i++) {
+            if(nextX <= nextY && nextX <= nextZ) {
+                if(nextX > 1.0) return false;
+                sectionX += stepX;
+                nextX += deltaX;
+            } else if(nextY <= nextZ) {
+                if(nextY > 1.0) return false;
+                sectionY += stepY;
+                nextY += deltaY;
+            } else {
+                if(nextZ > 1.0) return false;
+                sectionZ += stepZ;
+                nextZ += deltaZ;
+            }
+            if(sectionX == endX && sectionY == endY && sectionZ == endZ) return false;
+            if(isSectionOpaque(world, sectionX, sectionY, sectionZ)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return whether a chunk section is known to be filled with opaque blocks. Sections that have not been scanned yet,
+     * or not for {@value #SECTION_RESCAN_TICKS} ticks, are scanned while this tick's budget lasts. Until then, a section
+     * never scanned counts as open and one scanned long ago keeps its last state.
+     */
+    private static boolean isSectionOpaque(World world, int sectionX, int sectionY, int sectionZ) {
+        if(sectionY < 0 || sectionY >= world.getHeight() >> 4) return false;
+        final long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+        final long entry = SECTIONS.get(key);
+        final byte state = (byte) (entry & 0x03);
+        final long scanTime = entry >> 2;
+        final long time = scanBudgetTime;
+        if(state == UNKNOWN || time - scanTime >= SECTION_RESCAN_TICKS || time < scanTime) {
+            if(scansLeft == 0) return state == OPAQUE;
+            scansLeft--;
+            if(state == UNKNOWN && SECTIONS.size() >= MAX_CACHED_SECTIONS) SECTIONS.clear();
+            final byte scanned = scanSection(world, sectionX, sectionY, sectionZ) ? OPAQUE : OPEN;
+            SECTIONS.put(key, time << 2 | scanned);
+            return scanned == OPAQUE;
+        }
+        return state == OPAQUE;
+    }
+
+    /**
+     * @return whether every block in a chunk section is opaque. Stops at the first one that is not, which for most
+     * sections is one of the first few.
+     */
+    private static boolean scanSection(World world, int sectionX, int sectionY, int sectionZ) {
+        final ChunkSection[] sections = world.getChunk(sectionX, sectionZ).getSections();
+        if(sectionY >= sections.length) return false;
+        final ChunkSection section = sections[sectionY];
+        if(section == null || section.isEmpty()) return false;
+        final int originX = sectionX << 4;
+        final int originY = sectionY << 4;
+        final int originZ = sectionZ << 4;
+        for(int y = 0; y < 16; y++) {
+            for(int z = 0; z < 16; z++) {
+                for(int x = 0; x < 16; x++) {
+                    if(!section.getBlockState(x, y, z).isOpaqueCube(world, mutablePos.setPos(originX + x, originY + y, originZ + z))) return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -110,4 +110,117 @@ public interface Config<T> extends Comparable<Config> {
             }
         }
     }
+
+    class Bool implements Config<Boolean> {
+        private static final Logger LOGGER = LogManager.getLogger();
+
+        private final String name;
+        private String comment = "";
+        private boolean value;
+        private final boolean defaultValue;
+
+        public Bool(String name, boolean defaultValue) {
+            this.name = name;
+            this.value = defaultValue;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Boolean getValue() {
+            return value;
+        }
+
+        @Override
+        public void parse(String token) {
+            if("true".equalsIgnoreCase(token)) {
+                value = true;
+                LOGGER.debug("Set '" + name + "' to '" + value + "' loaded from config");
+            } else if("false".equalsIgnoreCase(token)) {
+                value = false;
+                LOGGER.debug("Set '" + name + "' to '" + value + "' loaded from config");
+            } else {
+                LOGGER.warn("Could not parse '" + name + "' config value, defaulting to " + defaultValue);
+                value = defaultValue;
+            }
+        }
+
+        @Override
+        public void write(PrintWriter wr) {
+            if(!comment.isEmpty()) {
+                wr.println("# " + comment);
+            }
+            wr.println("# Default: " + defaultValue);
+            wr.println(name + "=" + value);
+        }
+
+        public Bool setComment(String comment) {
+            this.comment = comment;
+            return this;
+        }
+    }
+
+    class Choice<E extends Enum<E>> implements Config<E> {
+        private static final Logger LOGGER = LogManager.getLogger();
+
+        private final String name;
+        private String comment = "";
+        private E value;
+        private final E defaultValue;
+        private final Class<E> enumClass;
+
+        public Choice(String name, E defaultValue, Class<E> enumClass) {
+            this.name = name;
+            this.value = defaultValue;
+            this.defaultValue = defaultValue;
+            this.enumClass = enumClass;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public E getValue() {
+            return value;
+        }
+
+        @Override
+        public void parse(String token) {
+            for(E choice : enumClass.getEnumConstants()) {
+                if(choice.name().equalsIgnoreCase(token)) {
+                    value = choice;
+                    LOGGER.debug("Set '" + name + "' to '" + value + "' loaded from config");
+                    return;
+                }
+            }
+            LOGGER.warn("Could not parse '" + name + "' config value, defaulting to " + defaultValue);
+            value = defaultValue;
+        }
+
+        @Override
+        public void write(PrintWriter wr) {
+            if(!comment.isEmpty()) {
+                wr.println("# " + comment);
+            }
+            wr.println("# Default: " + defaultValue.name().toLowerCase());
+            final StringBuilder choices = new StringBuilder();
+            for(E choice : enumClass.getEnumConstants()) {
+                if(choices.length() > 0) choices.append(", ");
+                choices.append(choice.name().toLowerCase());
+            }
+            wr.println("# Choices: " + choices);
+            wr.println(name + "=" + value.name().toLowerCase());
+        }
+
+        public Choice<E> setComment(String comment) {
+            this.comment = comment;
+            return this;
+        }
+    }
 }
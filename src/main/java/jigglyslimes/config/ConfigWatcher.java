@@ -0,0 +1,89 @@
+package jigglyslimes.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Watches a config file for changes on a background thread. The change is only flagged; whoever owns the config
+ * decides when it is safe to reload it.
+ */
+public class ConfigWatcher {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final Path path;
+    private final AtomicBoolean changed = new AtomicBoolean();
+    /** Modification time of the file as last written by the owner of the config, or -1 if not written since. */
+    private volatile long ownWriteTime = -1L;
+
+    private ConfigWatcher(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Starts watching a file. Failing to watch it is logged rather than thrown, since the config then simply cannot be
+     * reloaded without a restart.
+     * @return the watcher, or null if the file cannot be watched
+     */
+    public static ConfigWatcher start(File file) {
+        final Path path = file.getAbsoluteFile().toPath().normalize();
+        final Path dir = path.getParent();
+        final ConfigWatcher watcher = new ConfigWatcher(path);
+        try {
+            final WatchService watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            final Thread thread = new Thread(() -> watcher.run(watchService), "Jiggly Slimes Config Watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        } catch(IOException e) {
+            LOGGER.warn("Could not watch " + path + " for changes; config changes will need a restart");
+            LOGGER.debug(e);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the file has changed since the last call
+     */
+    public boolean consumeChange() {
+        return changed.getAndSet(false);
+    }
+
+    /**
+     * Marks the file as it is now as written by the owner of the config, so that changes up to this point are not
+     * reported as edits. Changes made after it are reported as usual.
+     */
+    public void ignoreCurrentVersion() {
+        ownWriteTime = path.toFile().lastModified();
+        changed.set(false);
+    }
+
+    private void run(WatchService watchService) {
+        try {
+            while(true) {
+                final WatchKey key = watchService.take();
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(path.getFileName().equals(event.context()) && path.toFile().lastModified() != ownWriteTime) {
+                        changed.set(true);
+                    }
+                }
+                if(!key.reset()) {
+                    LOGGER.warn("Stopped watching the config directory; config changes will need a restart");
+                    return;
+                }
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.debug("Config watcher stopped");
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.blaze3d.vertex.IVertexBuilder;
 import net.minecraft.util.math.vector.Vector3f;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * A "rectangular prism" mesh to be rendered as part of a model. Each face is a {@code QuadMesh}. The model faces the
  * +Z axis. Assumes the textured faces are arranged a la vanilla Minecraft.
@@ -16,6 +19,25 @@ public class BoxMesh implements ModelComponent {
     private final QuadMesh backFace; // -z
     private final QuadMesh topFace; // +y
     private final QuadMesh bottomFace; // -y
+    private final QuadMesh[] faces;
+    /**
+     * For each edge of each face, in the order of {@link QuadMesh#EDGE_CORNERS}, the index in {@link #faces} of the
+     * other face sharing it.
+     */
+    private final int[][] neighbours = new int[6][4];
+    /** The most distance, in blocks, a deformed face may stray from its triangles; 0 draws every face uniformly. */
+    private final float tolerance;
+    /** The model positions of the box's eight corners as x, y, z each. Corner c is at the high end of x if bit 2 is set, of y if bit 1 is, and of z if bit 0 is. */
+    private final float[] cornerModelPos = new float[24];
+    /** The corners of each face, in the order given to its constructor. */
+    private static final int[][] FACE_CORNERS = {{0, 2, 3, 1}, {1, 3, 7, 5}, {4, 5, 7, 6}, {0, 4, 6, 2}, {2, 6, 7, 3}, {0, 1, 5, 4}};
+
+    // The steps of one face's edges, and a deformation for drawing straight from model corners, per thread since boxes are drawn on several
+    private static final ThreadLocal<int[]> EDGE_SKIPS = ThreadLocal.withInitial(() -> new int[4]);
+    private static final ThreadLocal<Deformation> DEFORMATION = ThreadLocal.withInitial(Deformation::new);
+
+    /** GPU buffers for each resolution reduction, created the first time it is drawn with them. */
+    private final MeshBuffers[] buffers;
 
     /**
      * @param modelPosLow - the lower corner position within the model
@@ -30,6 +52,15 @@ public class BoxMesh implements ModelComponent {
      * @param texHeight - height of the texture file in pixels
      */
     public BoxMesh(Vector3f modelPosLow, Vector3f modelPosHigh, int uOff, int vOff, int dxTex, int dyTex, int dzTex, int maxResolution, int texWidth, int texHeight) {
+        this(modelPosLow, modelPosHigh, uOff, vOff, dxTex, dyTex, dzTex, maxResolution, texWidth, texHeight, 0.0F);
+    }
+
+    /**
+     * @param tolerance - the most distance, in blocks, a deformed face may stray from the triangles drawing it. Faces
+     *                  that stay flatter than this are drawn with fewer triangles than {@code maxResolution} gives;
+     *                  0 always draws the full resolution.
+     */
+    public BoxMesh(Vector3f modelPosLow, Vector3f modelPosHigh, int uOff, int vOff, int dxTex, int dyTex, int dzTex, int maxResolution, int texWidth, int texHeight, float tolerance) {
         Vector3f modelPos0 = new Vector3f(modelPosLow.getX(), modelPosLow.getY(), modelPosLow.getZ());
         Vector3f modelPos1 = new Vector3f(modelPosLow.getX(), modelPosLow.getY(), modelPosHigh.getZ());
         Vector3f modelPos2 = new Vector3f(modelPosLow.getX(), modelPosHigh.getY(), modelPosLow.getZ());
@@ -44,15 +75,196 @@ public class BoxMesh implements ModelComponent {
         backFace = new QuadMesh(modelPos0, uOff + 2 * dxTex + 2 * dzTex, vOff + dxTex + dyTex, modelPos4, uOff + 2 * dxTex + dzTex, vOff + dxTex + dyTex, modelPos6, uOff + 2 * dxTex + dzTex, vOff + dxTex, modelPos2, uOff + 2 * dxTex + 2 * dzTex, vOff + dxTex, maxResolution, texWidth, texHeight);
         topFace = new QuadMesh(modelPos2, uOff + dxTex, vOff, modelPos6, uOff + dxTex + dzTex, vOff, modelPos7, uOff + dxTex + dzTex, vOff + dxTex, modelPos3, uOff + dxTex, vOff + dxTex, maxResolution, texWidth, texHeight);
         bottomFace = new QuadMesh(modelPos0, uOff + dxTex + dzTex, vOff + dxTex, modelPos1, uOff + dxTex + dzTex, vOff, modelPos5, uOff + 2 * dxTex + dzTex, vOff, modelPos4, uOff + 2 * dxTex + dzTex, vOff + dxTex, maxResolution, texWidth, texHeight);
+        faces = new QuadMesh[] {leftFace, frontFace, rightFace, backFace, topFace, bottomFace};
+        final Vector3f[] modelPos = {modelPos0, modelPos1, modelPos2, modelPos3, modelPos4, modelPos5, modelPos6, modelPos7};
+        for(int c = 0; c < 8; c++) {
+            cornerModelPos[c * 3] = modelPos[c].getX();
+            cornerModelPos[c * 3 + 1] = modelPos[c].getY();
+            cornerModelPos[c * 3 + 2] = modelPos[c].getZ();
+        }
+        buffers = new MeshBuffers[Math.max(maxResolution, 0) + 1];
+        this.tolerance = tolerance;
+
+        for(int f = 0; f < faces.length; f++) {
+            for(int edge = 0; edge < 4; edge++) {
+                neighbours[f][edge] = findNeighbour(f, edge);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the other face sharing an edge of a face
+     */
+    private int findNeighbour(int face, int edge) {
+        for(int other = 0; other < faces.length; other++) {
+            if(other == face) continue;
+            for(int otherEdge = 0; otherEdge < 4; otherEdge++) {
+                if(faces[face].sharesEdge(edge, faces[other], otherEdge)) return other;
+            }
+        }
+        throw new IllegalStateException("Box face " + face + " has no neighbour along edge " + edge);
+    }
+
+    /**
+     * Deforms this box by the eight corners of the entity's model, relative to the entity origin, into a deformation
+     * that it can then be drawn and counted from any number of times. Each corner of the box is deformed once and
+     * shared by the three faces meeting there; the faces lie in planes of constant x, y or z, so each is deformed into
+     * exactly the bilinear patch between its deformed corners.
+     */
+    public void deform(Deformation deformation, Vector3f[] modelCorners) {
+        final float[] weights = deformation.weights;
+        final float[] corners = deformation.corners;
+        for(int c = 0; c < 8; c++) {
+            QuadMesh.setCornerWeights(weights, cornerModelPos[c * 3], cornerModelPos[c * 3 + 1], cornerModelPos[c * 3 + 2]);
+            float x = 0.0F, y = 0.0F, z = 0.0F;
+            for(int m = 0; m < 8; m++) {
+                x += weights[m] * modelCorners[m].getX();
+                y += weights[m] * modelCorners[m].getY();
+                z += weights[m] * modelCorners[m].getZ();
+            }
+            corners[c * 3] = x;
+            corners[c * 3 + 1] = y;
+            corners[c * 3 + 2] = z;
+        }
+        for(int f = 0; f < faces.length; f++) {
+            for(int k = 0; k < 4; k++) {
+                System.arraycopy(corners, FACE_CORNERS[f][k] * 3, deformation.patches[f], k * 3, 3);
+            }
+        }
+
+        final int levels = buffers.length;
+        if(deformation.triangleCounts.length != levels) {
+            deformation.triangleCounts = new int[levels];
+            deformation.faceSkips = new int[levels * faces.length];
+        }
+        Arrays.fill(deformation.triangleCounts, -1);
     }
 
     @Override
-    public void render(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, Vector3f[] modelCorners) {
-        leftFace.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, modelCorners);
-        frontFace.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, modelCorners);
-        rightFace.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, modelCorners);
-        backFace.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, modelCorners);
-        topFace.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, modelCorners);
-        bottomFace.render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, modelCorners);
+    public void render(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, boolean smoothShading, Vector3f[] modelCorners) {
+        final Deformation deformation = DEFORMATION.get();
+        deform(deformation, modelCorners);
+        render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, resReduction, smoothShading, deformation);
+    }
+
+    /**
+     * Draws each face with as few triangles as keep it within the tolerance of its deformed shape. An edge between two
+     * faces drawn at different steps is drawn at the finer step by both, so the faces meet without cracks.
+     * @param deformation - last deformed by this box; must already have been counted at this resolution reduction if
+     *                    it is shared with other threads
+     */
+    public void render(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, boolean smoothShading, Deformation deformation) {
+        final int level = selectFaceSkips(resReduction, deformation);
+        final int[] edgeSkips = EDGE_SKIPS.get();
+        for(int f = 0; f < faces.length; f++) {
+            computeEdgeSkips(f, deformation.faceSkips, level * faces.length, edgeSkips);
+            faces[f].render(lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, deformation.faceSkips[level * faces.length + f], edgeSkips, smoothShading, deformation.patches[f]);
+        }
+    }
+
+    /**
+     * @return the number of triangles this box is drawn with at a resolution reduction by {@link #renderBuffered},
+     * which always uses the full resolution of the reduction
+     */
+    public int getTriangleCount(int resReduction) {
+        final int skip = leftFace.getSkip(resReduction);
+        int numIndices = 0;
+        for(QuadMesh face : faces) {
+            numIndices += face.getSharedIndexCount(skip);
+        }
+        return numIndices / 3;
+    }
+
+    /**
+     * @return the number of triangles {@link #render} draws this box with at a resolution reduction
+     * @param deformation - last deformed by this box
+     */
+    public int getTriangleCount(int resReduction, Deformation deformation) {
+        return deformation.triangleCounts[selectFaceSkips(resReduction, deformation)];
+    }
+
+    /**
+     * Picks the step of each face at a resolution reduction and counts the triangles they give, unless the deformation
+     * already has them.
+     * @return the level the resolution reduction comes to for this box, which may have fewer levels than the slime
+     */
+    private int selectFaceSkips(int resReduction, Deformation deformation) {
+        final int level = Math.min(resReduction, buffers.length - 1);
+        if(deformation.triangleCounts[level] >= 0) return level;
+
+        final int skip = leftFace.getSkip(level);
+        final int[] faceSkips = deformation.faceSkips;
+        final int offset = level * faces.length;
+        for(int f = 0; f < faces.length; f++) {
+            faceSkips[offset + f] = faces[f].getAdaptiveSkip(skip, tolerance, deformation.patches[f]);
+        }
+        final int[] edgeSkips = EDGE_SKIPS.get();
+        int count = 0;
+        for(int f = 0; f < faces.length; f++) {
+            computeEdgeSkips(f, faceSkips, offset, edgeSkips);
+            count += faces[f].getTriangleCount(faceSkips[offset + f], edgeSkips);
+        }
+        deformation.triangleCounts[level] = count;
+        return level;
+    }
+
+    /**
+     * Sets the step along each edge of a face to the finer of the steps of the two faces sharing it.
+     */
+    private void computeEdgeSkips(int face, int[] faceSkips, int offset, int[] edgeSkips) {
+        for(int edge = 0; edge < 4; edge++) {
+            edgeSkips[edge] = Math.min(faceSkips[offset + face], faceSkips[offset + neighbours[face][edge]]);
+        }
+    }
+
+    /**
+     * Draws this box straight from GPU buffers that keep its texture coordinates and triangle indices, uploading only
+     * the deformed positions and normals. Vertices are shared between triangles, so the box is always smooth shaded.
+     * The render type's state must already be set up; this must be called on the render thread.
+     * @return the number of vertices uploaded
+     */
+    public int renderBuffered(MatrixStack.Entry lastMatrixEntry, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, Vector3f[] modelCorners) {
+        final int level = Math.min(resReduction, buffers.length - 1);
+        final int skip = leftFace.getSkip(level);
+        if(buffers[level] == null) {
+            buffers[level] = new MeshBuffers(faces, skip);
+        }
+
+        final MeshBuffers meshBuffers = buffers[level];
+        final ByteBuffer data = meshBuffers.beginDynamicData();
+        for(QuadMesh face : faces) {
+            face.putDynamicData(data, lastMatrixEntry.getMatrix(), lastMatrixEntry.getNormal(), skip, modelCorners);
+        }
+        meshBuffers.draw(packedLightIn, packedOverlayIn, red, green, blue, alpha);
+        return meshBuffers.vertexCount;
+    }
+
+    /**
+     * Frees any GPU buffers created by {@link #renderBuffered}. The box can still be drawn afterwards; the buffers are
+     * recreated as needed.
+     */
+    public void deleteBuffers() {
+        for(int i = 0; i < buffers.length; i++) {
+            if(buffers[i] != null) {
+                buffers[i].delete();
+                buffers[i] = null;
+            }
+        }
+    }
+
+    /**
+     * A box deformed for one slime in one frame, shared by every pass that draws or counts it. Holds the deformed
+     * corners of the box and, for each resolution reduction once it is needed, the step of each face and the number of
+     * triangles they give. Belongs to whichever box last deformed it.
+     */
+    public static final class Deformation {
+        private final float[] weights = new float[8];
+        private final float[] corners = new float[24];
+        /** The deformed corners of each face, in the order given to its constructor. */
+        private final float[][] patches = new float[6][12];
+        /** The step of each face at each level, indexed by level * 6 + face. */
+        private int[] faceSkips = new int[0];
+        /** The number of triangles at each level, or -1 where the face steps have not been picked yet. */
+        private int[] triangleCounts = new int[0];
     }
 }
@@ -0,0 +1,126 @@
+package jigglyslimes.model;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * GPU-side buffers for drawing a set of {@code QuadMesh}es at one resolution with shared vertices. The texture
+ * coordinates and triangle indices never change, so they are uploaded once when the buffers are created; only the
+ * positions and normals are streamed each time the meshes are drawn. Colour, overlay and lightmap coordinates are
+ * constant across a draw and are given as current vertex attributes instead of per-vertex data.
+ */
+class MeshBuffers {
+
+    /** Bytes per streamed vertex: three floats of position, three bytes of normal and one byte of padding. */
+    static final int DYNAMIC_VERTEX_SIZE = 16;
+
+    private static ByteBuffer dynamicData = MemoryUtil.memAlloc(DYNAMIC_VERTEX_SIZE * 1024);
+
+    final int vertexCount;
+    private final int indexCount;
+    private final int uvBuffer;
+    private final int indexBuffer;
+    private final int dynamicBuffer;
+
+    MeshBuffers(QuadMesh[] meshes, int skip) {
+        int numVertices = 0;
+        int numIndices = 0;
+        for(QuadMesh mesh : meshes) {
+            numVertices += mesh.getSharedVertexCount(skip);
+            numIndices += mesh.getSharedIndexCount(skip);
+        }
+        vertexCount = numVertices;
+        indexCount = numIndices;
+
+        final FloatBuffer uvs = MemoryUtil.memAllocFloat(numVertices * 2);
+        final IntBuffer indices = MemoryUtil.memAllocInt(numIndices);
+        int baseVertex = 0;
+        for(QuadMesh mesh : meshes) {
+            mesh.putStaticData(uvs, indices, baseVertex, skip);
+            baseVertex += mesh.getSharedVertexCount(skip);
+        }
+        uvs.flip();
+        indices.flip();
+
+        uvBuffer = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, uvBuffer);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, uvs, GL15.GL_STATIC_DRAW);
+        dynamicBuffer = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, dynamicBuffer);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, (long) numVertices * DYNAMIC_VERTEX_SIZE, GL15.GL_STREAM_DRAW);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        indexBuffer = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        MemoryUtil.memFree(uvs);
+        MemoryUtil.memFree(indices);
+    }
+
+    /**
+     * @return a cleared scratch buffer with room for the positions and normals of {@link #vertexCount} vertices
+     */
+    ByteBuffer beginDynamicData() {
+        final int size = vertexCount * DYNAMIC_VERTEX_SIZE;
+        if(dynamicData.capacity() < size) {
+            dynamicData = MemoryUtil.memRealloc(dynamicData, size);
+        }
+        dynamicData.clear();
+        return dynamicData;
+    }
+
+    /**
+     * Uploads the data written since {@link #beginDynamicData()} and draws the meshes. The render type's state must
+     * already be set up.
+     */
+    void draw(int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha) {
+        dynamicData.flip();
+
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, dynamicBuffer);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, (long) vertexCount * DYNAMIC_VERTEX_SIZE, GL15.GL_STREAM_DRAW); // Orphan the previous contents
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, dynamicData);
+        GL11.glVertexPointer(3, GL11.GL_FLOAT, DYNAMIC_VERTEX_SIZE, 0);
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glNormalPointer(GL11.GL_BYTE, DYNAMIC_VERTEX_SIZE, 12);
+        GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);
+
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, uvBuffer);
+        GL13.glClientActiveTexture(GL13.GL_TEXTURE0);
+        GL11.glTexCoordPointer(2, GL11.GL_FLOAT, 8, 0);
+        GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+        // Texture units 1 and 2 hold the overlay and the lightmap, as in DefaultVertexFormats.ENTITY.
+        GL11.glColor4f(red, green, blue, alpha);
+        GL13.glMultiTexCoord2s(GL13.GL_TEXTURE1, (short) (packedOverlayIn & 0xFFFF), (short) (packedOverlayIn >> 16 & 0xFFFF));
+        GL13.glMultiTexCoord2s(GL13.GL_TEXTURE2, (short) (packedLightIn & 0xFFFF), (short) (packedLightIn >> 16 & 0xFFFF));
+
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        GL11.glDrawElements(GL11.GL_TRIANGLES, indexCount, GL11.GL_UNSIGNED_INT, 0);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        GL11.glDisableClientState(GL11.GL_NORMAL_ARRAY);
+        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+        RenderSystem.clearCurrentColor();
+    }
+
+    /**
+     * Frees the GPU buffers. May be called from any thread; the deletion happens on the render thread.
+     */
+    void delete() {
+        RenderSystem.recordRenderCall(() -> {
+            GL15.glDeleteBuffers(uvBuffer);
+            GL15.glDeleteBuffers(indexBuffer);
+            GL15.glDeleteBuffers(dynamicBuffer);
+        });
+    }
+}
@@ -14,6 +14,7 @@ public interface ModelComponent {
     /**
      * Renders this component given the eight corners of the entity's model, relative to the entity origin. The corners
      * need not form a rectangular prism.
+     * @param smoothShading - whether to give each vertex an averaged normal rather than giving each triangle its own
      */
-    void render(MatrixStack.Entry matrixEntryIn, IVertexBuilder bufferIn, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, Vector3f[] modelCorners);
+    void render(MatrixStack.Entry matrixEntryIn, IVertexBuilder bufferIn, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, boolean smoothShading, Vector3f[] modelCorners);
 }
@@ -2,7 +2,6 @@ package jigglyslimes.model;
 
 import com.mojang.blaze3d.matrix.MatrixStack;
 import com.mojang.blaze3d.vertex.IVertexBuilder;
-import jigglyslimes.math.MathUtil;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.vector.Matrix3f;
 import net.minecraft.util.math.vector.Matrix4f;
@@ -11,6 +10,10 @@ import net.minecraft.util.math.vector.Vector4f;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 /**
  * A "quadrilateral" having UV texture mappings for each of its four vertices. Unlike a typical quadrilateral, the
  * vertices need not be coplanar; extra vertices are added in between using bilinear interpolation.
@@ -20,18 +23,23 @@ public class QuadMesh implements ModelComponent {
     private static final Logger LOGGER = LogManager.getLogger();
 
     private final int numVertices;
-    /** The vertices of this mesh relative to the entity model. */
-    private final Vector3f[][] modelPos;
-    /** The vertices of this mesh relative to the entity position. */
-    private final Vector3f[][] lerpedModelPos;
-    private final float[][] u, v;
+    /**
+     * The model positions and UV coordinates of the four corners given to the constructor, as x, y, z and u, v per
+     * corner. Every other vertex lies between them, so nothing is stored per vertex and a mesh takes the same memory at
+     * any resolution.
+     */
+    private final float[] cornerModelPos = new float[12];
+    private final float[] cornerUV = new float[8];
+
+    /**
+     * The lattice corners at each end of each edge of the mesh, as indices of the model positions given to the
+     * constructor. Edge 0 runs along j = 0, edge 1 along i = numVertices - 1, edge 2 along j = numVertices - 1 and edge 3
+     * along i = 0.
+     */
+    static final int[][] EDGE_CORNERS = {{1, 0}, {0, 3}, {2, 3}, {1, 2}};
 
-    // Temporary vectors
-    private static final Vector3f temp0 = new Vector3f();
-    private static final Vector3f temp1 = new Vector3f();
-    private static final Vector3f temp2 = new Vector3f();
-    private static final Vector3f temp3 = new Vector3f();
-    private static final Vector4f temp4 = new Vector4f();
+    /** Each thread deforms meshes in its own scratch, so meshes can be built on several threads at once. */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
     /**
      * Construct a {@code QuadMesh} using four sets of model positions and UV pairs. Model positions should be given
@@ -45,21 +53,20 @@ public class QuadMesh implements ModelComponent {
         }
 
         this.numVertices = (1 << maxResolution) + 1; // # of vertices = 2 to the power of the resolution + 1
-        modelPos = new Vector3f[numVertices][numVertices];
-        lerpedModelPos = new Vector3f[numVertices][numVertices];
-        u = new float[numVertices][numVertices];
-        v = new float[numVertices][numVertices];
-
-        for(int j = 0; j < numVertices; j++) {
-            for(int i = 0; i < numVertices; i++) {
-                float iSlide = (float) i / (numVertices - 1);
-                float jSlide = (float) j / (numVertices - 1);
-                modelPos[i][j] = MathUtil.lerp(MathUtil.lerp(modelPos1, modelPos0, iSlide, temp0), MathUtil.lerp(modelPos2, modelPos3, iSlide, temp1), jSlide, new Vector3f());
-                lerpedModelPos[i][j] = modelPos[i][j].copy();
-                u[i][j] = (float) MathHelper.clampedLerp(MathHelper.clampedLerp(u1, u0, iSlide), MathHelper.clampedLerp(u2, u3, iSlide), jSlide);
-                v[i][j] = (float) MathHelper.clampedLerp(MathHelper.clampedLerp(v1, v0, iSlide), MathHelper.clampedLerp(v2, v3, iSlide), jSlide);
-            }
+        final Vector3f[] modelPos = {modelPos0, modelPos1, modelPos2, modelPos3};
+        for(int k = 0; k < 4; k++) {
+            cornerModelPos[k * 3] = modelPos[k].getX();
+            cornerModelPos[k * 3 + 1] = modelPos[k].getY();
+            cornerModelPos[k * 3 + 2] = modelPos[k].getZ();
         }
+        cornerUV[0] = u0;
+        cornerUV[1] = v0;
+        cornerUV[2] = u1;
+        cornerUV[3] = v1;
+        cornerUV[4] = u2;
+        cornerUV[5] = v2;
+        cornerUV[6] = u3;
+        cornerUV[7] = v3;
     }
 
     /**
@@ -76,76 +83,524 @@ public class QuadMesh implements ModelComponent {
     /**
      * Adds the triangles that form this mesh to an {@code IVertexBuilder}, so they can be drawn. This involves
      * calculating the interpolated vertices using the eight corners of the entity's model, relative to the entity
-     * position.
+     * position. Safe to call from several threads at once.
      * @param vertexBuilder - the {@code IVertexBuilder} to append to
      */
     @Override
-    public void render(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, Vector3f[] modelCorners) {
+    public void render(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int resReduction, boolean smoothShading, Vector3f[] modelCorners) {
+        final Scratch scratch = SCRATCH.get();
+        useModelCorners(scratch, modelCorners);
+        render(scratch, lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, getSkip(resReduction), null, smoothShading);
+    }
+
+    /**
+     * Adds the triangles of this mesh with a step between the lattice vertices drawn, where some of its edges may be
+     * shared with meshes drawn in more detail. Each cell along such an edge is drawn as a fan around its centre that
+     * takes in every vertex the other mesh has on the edge, so that the two meet without cracks.
+     * @param skip - the step between the lattice vertices drawn
+     * @param edgeSkips - the step between the vertices drawn along each edge, in the order of {@link #EDGE_CORNERS}.
+     *                  Each must divide {@code skip}. Null draws every edge with {@code skip}.
+     * @throws IllegalArgumentException if an edge step does not divide {@code skip}
+     * @param patch - the deformed positions of this mesh's four corners, in the order given to the constructor. Only
+     *              for meshes whose corners form a rectangle lying in a plane of constant x, y or z in the model, such as
+     *              the faces of a {@code BoxMesh}, which are deformed into exactly the bilinear patch between them.
+     */
+    void render(MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int skip, int[] edgeSkips, boolean smoothShading, float[] patch) {
+        checkEdgeSkips(skip, edgeSkips);
+        final Scratch scratch = SCRATCH.get();
+        scratch.patch = patch;
+        render(scratch, lastMatrixEntry, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, skip, edgeSkips, smoothShading);
+    }
+
+    private void render(Scratch scratch, MatrixStack.Entry lastMatrixEntry, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int skip, int[] edgeSkips, boolean smoothShading) {
         final Matrix4f projMatrix = lastMatrixEntry.getMatrix();
         final Matrix3f normMatrix = lastMatrixEntry.getNormal();
 
-        final int skip = Math.min(1 << resReduction, numVertices - 1);
-
-        // Calculate the interpolated vertices using the eight corners of the entity's model, relative to the entity origin.
-        for(int j = 0; j < numVertices; j += skip) {
-            for(int i = 0; i < numVertices; i += skip) {
-                MathUtil.lerp(modelCorners[0], modelCorners[4], modelPos[i][j].getX(), temp0);
-                MathUtil.lerp(modelCorners[2], modelCorners[6], modelPos[i][j].getX(), temp1);
-                MathUtil.lerp(temp0, temp1, modelPos[i][j].getY(), temp2);
-                MathUtil.lerp(modelCorners[1], modelCorners[5], modelPos[i][j].getX(), temp0);
-                MathUtil.lerp(modelCorners[3], modelCorners[7], modelPos[i][j].getX(), temp1);
-                MathUtil.lerp(temp0, temp1, modelPos[i][j].getY(), temp3);
-                MathUtil.lerp(temp2, temp3, modelPos[i][j].getZ(), lerpedModelPos[i][j]);
+        final int n = getSideLength(skip);
+        deform(scratch, n);
+        if(smoothShading) computeSmoothVertices(scratch, projMatrix, normMatrix, n);
+
+        final int cells = n - 1;
+        final int ratio0 = edgeSkips == null ? 1 : skip / edgeSkips[0];
+        final int ratio1 = edgeSkips == null ? 1 : skip / edgeSkips[1];
+        final int ratio2 = edgeSkips == null ? 1 : skip / edgeSkips[2];
+        final int ratio3 = edgeSkips == null ? 1 : skip / edgeSkips[3];
+        for(int jj = 0; jj < cells; jj++) {
+            for(int ii = 0; ii < cells; ii++) {
+                final int k = jj * n + ii;
+                if(getCellPerimeter(cells, ii, jj, ratio0, ratio1, ratio2, ratio3) > 4) {
+                    addFan(scratch, projMatrix, normMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, smoothShading, n, ii, jj, ratio0, ratio1, ratio2, ratio3);
+                } else if(smoothShading) {
+                    // Tri 1
+                    addSmoothVertex(scratch, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, k + 1);
+                    addSmoothVertex(scratch, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, k);
+                    addSmoothVertex(scratch, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, k + n);
+                    // Tri 2
+                    addSmoothVertex(scratch, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, k + 1);
+                    addSmoothVertex(scratch, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, k + n);
+                    addSmoothVertex(scratch, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, k + n + 1);
+                } else {
+                    addTriangle(scratch, projMatrix, normMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, scratch.lattice, scratch.texCoords, k + 1, k, k + n);
+                    addTriangle(scratch, projMatrix, normMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, scratch.lattice, scratch.texCoords, k + 1, k + n, k + n + 1);
+                }
             }
         }
+    }
 
-        // Add to BufferBuilder
-        for(int j = 0; j < numVertices - 1; j += skip) {
-            for(int i = 0; i < numVertices - 1; i += skip) {
-                // Tri 1
-                Vector3f lerpedModelPos0 = lerpedModelPos[i + skip][j].copy();
-                Vector3f lerpedModelPos1 = lerpedModelPos[i][j].copy();
-                Vector3f lerpedModelPos2 = lerpedModelPos[i][j + skip].copy();
+    /**
+     * @return the number of vertices drawn around the edge of a cell: 4, unless the cell lies along an edge that is
+     * drawn in more detail than the rest of the mesh
+     * @param cells - the number of cells along each side of the lattice
+     * @param ratio0 - the number of vertex steps along edge 0 per step of the lattice, and so on for each edge
+     */
+    private static int getCellPerimeter(int cells, int ii, int jj, int ratio0, int ratio1, int ratio2, int ratio3) {
+        return (jj == 0 ? ratio0 : 1) + (ii == cells - 1 ? ratio1 : 1) + (jj == cells - 1 ? ratio2 : 1) + (ii == 0 ? ratio3 : 1);
+    }
 
-                MathUtil.sub(lerpedModelPos0, lerpedModelPos1, temp0);
-                MathUtil.sub(lerpedModelPos2, lerpedModelPos1, temp1);
-                temp0.cross(temp1);
-                temp0.normalize();
-                temp0.transform(normMatrix);
+    /**
+     * @return the number of triangles {@link #render(MatrixStack.Entry, IVertexBuilder, int, int, float, float, float,
+     * float, int, int[], boolean, float[])} adds with the same steps
+     */
+    int getTriangleCount(int skip, int[] edgeSkips) {
+        final int cells = (numVertices - 1) / skip;
+        int count = 2 * cells * cells;
+        if(edgeSkips == null) return count;
+        checkEdgeSkips(skip, edgeSkips);
+
+        // Only cells on the border can be drawn as fans, with one triangle per vertex around them instead of two
+        final int ratio0 = skip / edgeSkips[0];
+        final int ratio1 = skip / edgeSkips[1];
+        final int ratio2 = skip / edgeSkips[2];
+        final int ratio3 = skip / edgeSkips[3];
+        for(int jj = 0; jj < cells; jj++) {
+            final int step = jj == 0 || jj == cells - 1 ? 1 : cells - 1;
+            for(int ii = 0; ii < cells; ii += step) {
+                final int perimeter = getCellPerimeter(cells, ii, jj, ratio0, ratio1, ratio2, ratio3);
+                if(perimeter > 4) count += perimeter - 2;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fails unless the step along each edge divides the step of the lattice, so that every lattice vertex on the edge is
+     * also drawn by the mesh on the other side of it.
+     */
+    private static void checkEdgeSkips(int skip, int[] edgeSkips) {
+        if(edgeSkips == null) return;
+        for(int edge = 0; edge < 4; edge++) {
+            if(edgeSkips[edge] <= 0 || skip % edgeSkips[edge] != 0) {
+                throw new IllegalArgumentException("Step of " + edgeSkips[edge] + " along edge " + edge + " does not divide the lattice step of " + skip);
+            }
+        }
+    }
+
+    /**
+     * @return the step between the lattice vertices that are drawn at a resolution reduction
+     */
+    int getSkip(int resReduction) {
+        return Math.min(1 << resReduction, numVertices - 1);
+    }
+
+    /**
+     * Picks how coarsely this mesh can be drawn while deformed into a bilinear patch. Two triangles stray from such a
+     * patch by at most a quarter of its twist, the difference between its two diagonals' sums of corners, and halving
+     * the step quarters the twist of each cell.
+     * @param skip - the finest step allowed
+     * @param tolerance - the most distance the surface may stray from the triangles drawn; 0 always uses {@code skip}
+     * @param patch - the deformed positions of this mesh's four corners, as for {@link #render(MatrixStack.Entry,
+     *              IVertexBuilder, int, int, float, float, float, float, int, int[], boolean, float[])}
+     * @return the coarsest step, no finer than {@code skip}, that keeps within the tolerance
+     */
+    int getAdaptiveSkip(int skip, float tolerance, float[] patch) {
+        if(tolerance <= 0.0F) return skip;
+
+        // The lattice corners (0, 0) and (1, 1) are the constructor's corners 1 and 3
+        float twist = 0.0F;
+        for(int axis = 0; axis < 3; axis++) {
+            final float t = patch[3 + axis] + patch[9 + axis] - patch[axis] - patch[6 + axis];
+            twist += t * t;
+        }
+        final double deviation = Math.sqrt(twist) / 4;
 
-                transform(lerpedModelPos0, projMatrix);
-                transform(lerpedModelPos1, projMatrix);
-                transform(lerpedModelPos2, projMatrix);
+        final int maxCells = (numVertices - 1) / skip;
+        final double neededCells = Math.sqrt(deviation / tolerance);
+        int cells = 1;
+        while(cells < maxCells && cells < neededCells) cells *= 2;
+        return (numVertices - 1) / cells;
+    }
 
-                vertexBuilder.addVertex(lerpedModelPos0.getX(), lerpedModelPos0.getY(), lerpedModelPos0.getZ(), red, green, blue, alpha, u[i + skip][j], v[i + skip][j], packedOverlayIn, packedLightIn, temp0.getX(), temp0.getY(), temp0.getZ());
-                vertexBuilder.addVertex(lerpedModelPos1.getX(), lerpedModelPos1.getY(), lerpedModelPos1.getZ(), red, green, blue, alpha, u[i][j], v[i][j], packedOverlayIn, packedLightIn, temp0.getX(), temp0.getY(), temp0.getZ());
-                vertexBuilder.addVertex(lerpedModelPos2.getX(), lerpedModelPos2.getY(), lerpedModelPos2.getZ(), red, green, blue, alpha, u[i][j + skip], v[i][j + skip], packedOverlayIn, packedLightIn, temp0.getX(), temp0.getY(), temp0.getZ());
+    /**
+     * @return whether an edge of this mesh has the same end points in the model as an edge of another mesh
+     */
+    boolean sharesEdge(int edge, QuadMesh other, int otherEdge) {
+        final int a = EDGE_CORNERS[edge][0], b = EDGE_CORNERS[edge][1];
+        final int c = EDGE_CORNERS[otherEdge][0], d = EDGE_CORNERS[otherEdge][1];
+        return isSameCorner(a, other, c) && isSameCorner(b, other, d) || isSameCorner(a, other, d) && isSameCorner(b, other, c);
+    }
 
+    private boolean isSameCorner(int corner, QuadMesh other, int otherCorner) {
+        for(int axis = 0; axis < 3; axis++) {
+            if(cornerModelPos[corner * 3 + axis] != other.cornerModelPos[otherCorner * 3 + axis]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of vertices along each side of the lattice drawn with a step between vertices
+     */
+    private int getSideLength(int skip) {
+        return (numVertices - 1) / skip + 1;
+    }
+
+    /**
+     * @return the number of vertices drawn when sharing them between triangles
+     */
+    int getSharedVertexCount(int skip) {
+        final int n = getSideLength(skip);
+        return n * n;
+    }
+
+    /**
+     * @return the number of triangle indices drawn when sharing vertices between triangles
+     */
+    int getSharedIndexCount(int skip) {
+        final int n = (numVertices - 1) / skip;
+        return n * n * 6;
+    }
+
+    /**
+     * Writes the parts of the shared-vertex form of this mesh that never change: the texture coordinates of each
+     * vertex and the indices of each triangle.
+     * @param baseVertex - the index of this mesh's first vertex within the buffer
+     */
+    void putStaticData(FloatBuffer uvs, IntBuffer indices, int baseVertex, int skip) {
+        final int n = getSideLength(skip);
+        for(int jj = 0; jj < n; jj++) {
+            final float jSlide = (float) jj / (n - 1);
+            for(int ii = 0; ii < n; ii++) {
+                final float iSlide = (float) ii / (n - 1);
+                uvs.put(bilerp(cornerUV, 0, iSlide, jSlide)).put(bilerp(cornerUV, 1, iSlide, jSlide));
+            }
+        }
+        for(int jj = 0; jj < n - 1; jj++) {
+            for(int ii = 0; ii < n - 1; ii++) {
+                final int k = baseVertex + jj * n + ii;
+                // Tri 1
+                indices.put(k + 1).put(k).put(k + n);
                 // Tri 2
-                lerpedModelPos0 = lerpedModelPos[i + skip][j].copy();
-                lerpedModelPos1 = lerpedModelPos[i][j + skip].copy();
-                lerpedModelPos2 = lerpedModelPos[i + skip][j + skip].copy();
+                indices.put(k + 1).put(k + n).put(k + n + 1);
+            }
+        }
+    }
+
+    /**
+     * Writes the positions and normals of the shared-vertex form of this mesh, deformed by the eight model corners, as
+     * three floats and three signed normalized bytes plus one byte of padding per vertex.
+     */
+    void putDynamicData(ByteBuffer data, Matrix4f projMatrix, Matrix3f normMatrix, int skip, Vector3f[] modelCorners) {
+        final Scratch scratch = SCRATCH.get();
+        final int n = getSideLength(skip);
+        useModelCorners(scratch, modelCorners);
+        deform(scratch, n);
+        computeSmoothVertices(scratch, projMatrix, normMatrix, n);
+        final float[] smoothPos = scratch.smoothPos;
+        final float[] smoothNorm = scratch.smoothNorm;
+        final int count = n * n * 3;
+        for(int k = 0; k < count; k += 3) {
+            data.putFloat(smoothPos[k]).putFloat(smoothPos[k + 1]).putFloat(smoothPos[k + 2]);
+            data.put(normalToByte(smoothNorm[k])).put(normalToByte(smoothNorm[k + 1])).put(normalToByte(smoothNorm[k + 2])).put((byte) 0);
+        }
+    }
+
+    private static byte normalToByte(float f) {
+        return (byte) ((int) (MathHelper.clamp(f, -1.0F, 1.0F) * 127.0F) & 255);
+    }
+
+    /**
+     * Interpolates a value given at the four corners of this mesh, the same way vertex positions are placed between
+     * them.
+     * @param values - the values at corners 0 to 3, each taking up {@code stride} elements
+     * @param offset - the element of each corner's values to interpolate
+     */
+    private static float bilerp(float[] values, int offset, float iSlide, float jSlide) {
+        final int stride = values.length / 4;
+        final float lower = lerp(values[stride + offset], values[offset], iSlide);
+        final float upper = lerp(values[2 * stride + offset], values[3 * stride + offset], iSlide);
+        return lerp(lower, upper, jSlide);
+    }
+
+    private static float lerp(float lower, float upper, float slide) {
+        return lower * (1.0F - slide) + upper * slide;
+    }
+
+    /**
+     * Calculates the interpolated vertices of the lattice, deformed as last set up in the scratch, storing them and
+     * their texture coordinates in the scratch. Each vertex's place within the model is worked out from its place in the
+     * lattice, so nothing is stored per vertex between uses.
+     * @param n - the number of vertices along each side of the lattice drawn
+     */
+    private void deform(Scratch scratch, int n) {
+        if(scratch.lattice.length < n * n * 3) {
+            scratch.lattice = new float[n * n * 3];
+            scratch.texCoords = new float[n * n * 2];
+        }
+        final float[] lattice = scratch.lattice;
+        final float[] texCoords = scratch.texCoords;
+        for(int jj = 0; jj < n; jj++) {
+            final float jSlide = (float) jj / (n - 1);
+            for(int ii = 0; ii < n; ii++) {
+                final float iSlide = (float) ii / (n - 1);
+                final int k = jj * n + ii;
+                deformPoint(scratch, iSlide, jSlide, lattice, k * 3);
+                texCoords[k * 2] = bilerp(cornerUV, 0, iSlide, jSlide);
+                texCoords[k * 2 + 1] = bilerp(cornerUV, 1, iSlide, jSlide);
+            }
+        }
+    }
+
+    /**
+     * Sets up the scratch to deform each point of the mesh by the eight model corners.
+     */
+    private static void useModelCorners(Scratch scratch, Vector3f[] modelCorners) {
+        scratch.patch = null;
+        for(int c = 0; c < 8; c++) {
+            scratch.cornerX[c] = modelCorners[c].getX();
+            scratch.cornerY[c] = modelCorners[c].getY();
+            scratch.cornerZ[c] = modelCorners[c].getZ();
+        }
+    }
+
+    /**
+     * Deforms the point of this mesh at the given slides along the lattice, as set up in the scratch, storing it at an
+     * offset in an array. A bilinear patch is a few multiplies per point, where the model corners take a full trilinear
+     * blend.
+     */
+    private void deformPoint(Scratch scratch, float iSlide, float jSlide, float[] result, int offset) {
+        final float[] patch = scratch.patch;
+        if(patch != null) {
+            result[offset] = bilerp(patch, 0, iSlide, jSlide);
+            result[offset + 1] = bilerp(patch, 1, iSlide, jSlide);
+            result[offset + 2] = bilerp(patch, 2, iSlide, jSlide);
+            return;
+        }
+
+        final float[] weights = scratch.weights;
+        setCornerWeights(weights, bilerp(cornerModelPos, 0, iSlide, jSlide), bilerp(cornerModelPos, 1, iSlide, jSlide), bilerp(cornerModelPos, 2, iSlide, jSlide));
+        float x = 0.0F, y = 0.0F, z = 0.0F;
+        for(int c = 0; c < 8; c++) {
+            x += weights[c] * scratch.cornerX[c];
+            y += weights[c] * scratch.cornerY[c];
+            z += weights[c] * scratch.cornerZ[c];
+        }
+        result[offset] = x;
+        result[offset + 1] = y;
+        result[offset + 2] = z;
+    }
+
+    /**
+     * Stores the trilinear weights of the eight model corners for a position in model space. Corner c lies at the high
+     * end of the x-axis if bit 2 of c is set, of the y-axis if bit 1 is set, and of the z-axis if bit 0 is set.
+     */
+    static void setCornerWeights(float[] weights, float x, float y, float z) {
+        for(int c = 0; c < 8; c++) {
+            weights[c] = ((c & 0x04) == 0 ? 1.0F - x : x) * ((c & 0x02) == 0 ? 1.0F - y : y) * ((c & 0x01) == 0 ? 1.0F - z : z);
+        }
+    }
+
+    /**
+     * Sets a vector to the difference between two deformed vertices.
+     */
+    private static void sub(float[] lattice, int a, int b, Vector3f result) {
+        result.set(lattice[a * 3] - lattice[b * 3], lattice[a * 3 + 1] - lattice[b * 3 + 1], lattice[a * 3 + 2] - lattice[b * 3 + 2]);
+    }
 
-                MathUtil.sub(lerpedModelPos0, lerpedModelPos1, temp0);
-                MathUtil.sub(lerpedModelPos2, lerpedModelPos1, temp1);
+    /**
+     * Transforms each deformed lattice vertex exactly once and gives it a normal averaged from the surface around it,
+     * storing the results in the scratch's smooth positions and normals.
+     */
+    private void computeSmoothVertices(Scratch scratch, Matrix4f projMatrix, Matrix3f normMatrix, int n) {
+        if(scratch.smoothPos.length < n * n * 3) {
+            scratch.smoothPos = new float[n * n * 3];
+            scratch.smoothNorm = new float[n * n * 3];
+        }
+        final float[] lattice = scratch.lattice;
+        final float[] smoothPos = scratch.smoothPos;
+        final float[] smoothNorm = scratch.smoothNorm;
+        final Vector3f temp0 = scratch.temp0;
+        final Vector3f temp1 = scratch.temp1;
+        final Vector4f temp4 = scratch.temp4;
+
+        for(int jj = 0; jj < n; jj++) {
+            for(int ii = 0; ii < n; ii++) {
+                final int k = (jj * n + ii) * 3;
+                temp4.set(lattice[k], lattice[k + 1], lattice[k + 2], 1.0F);
+                temp4.transform(projMatrix);
+                smoothPos[k] = temp4.getX();
+                smoothPos[k + 1] = temp4.getY();
+                smoothPos[k + 2] = temp4.getZ();
+
+                // Central differences across the neighbouring vertices average the normals of the surrounding
+                // triangles; on the border of the mesh they fall back to one-sided differences.
+                sub(lattice, jj * n + Math.min(ii + 1, n - 1), jj * n + Math.max(ii - 1, 0), temp0);
+                sub(lattice, Math.min(jj + 1, n - 1) * n + ii, Math.max(jj - 1, 0) * n + ii, temp1);
                 temp0.cross(temp1);
                 temp0.normalize();
                 temp0.transform(normMatrix);
+                smoothNorm[k] = temp0.getX();
+                smoothNorm[k + 1] = temp0.getY();
+                smoothNorm[k + 2] = temp0.getZ();
+            }
+        }
+    }
 
-                transform(lerpedModelPos0, projMatrix);
-                transform(lerpedModelPos1, projMatrix);
-                transform(lerpedModelPos2, projMatrix);
+    /**
+     * Adds a vertex prepared by {@link #computeSmoothVertices}, which is shared by every triangle touching it.
+     */
+    private static void addSmoothVertex(Scratch scratch, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int k) {
+        final float[] smoothPos = scratch.smoothPos;
+        final float[] smoothNorm = scratch.smoothNorm;
+        final float[] texCoords = scratch.texCoords;
+        vertexBuilder.addVertex(smoothPos[k * 3], smoothPos[k * 3 + 1], smoothPos[k * 3 + 2], red, green, blue, alpha, texCoords[k * 2], texCoords[k * 2 + 1], packedOverlayIn, packedLightIn, smoothNorm[k * 3], smoothNorm[k * 3 + 1], smoothNorm[k * 3 + 2]);
+    }
+
+    /**
+     * Adds a cell of the lattice as a fan of triangles around its centre. The fan takes in every vertex along its
+     * sides at the given number of steps per side, walking around the cell in the same direction as the two triangles
+     * of an ordinary cell wind.
+     */
+    private void addFan(Scratch scratch, Matrix4f projMatrix, Matrix3f normMatrix, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, boolean smoothShading, int n, int ii, int jj, int ratio0, int ratio1, int ratio2, int ratio3) {
+        final int cells = n - 1;
+        final int side0 = jj == 0 ? ratio0 : 1;
+        final int side1 = ii == cells - 1 ? ratio1 : 1;
+        final int side2 = jj == cells - 1 ? ratio2 : 1;
+        final int side3 = ii == 0 ? ratio3 : 1;
+        final int perimeter = side0 + side1 + side2 + side3;
+        if(scratch.fanPos.length < (perimeter + 1) * 3) {
+            scratch.fanPos = new float[(perimeter + 1) * 3];
+            scratch.fanUV = new float[(perimeter + 1) * 2];
+            scratch.fanNorm = new float[(perimeter + 1) * 3];
+        }
 
-                vertexBuilder.addVertex(lerpedModelPos0.getX(), lerpedModelPos0.getY(), lerpedModelPos0.getZ(), red, green, blue, alpha, u[i + skip][j], v[i + skip][j], packedOverlayIn, packedLightIn, temp0.getX(), temp0.getY(), temp0.getZ());
-                vertexBuilder.addVertex(lerpedModelPos1.getX(), lerpedModelPos1.getY(), lerpedModelPos1.getZ(), red, green, blue, alpha, u[i][j + skip], v[i][j + skip], packedOverlayIn, packedLightIn, temp0.getX(), temp0.getY(), temp0.getZ());
-                vertexBuilder.addVertex(lerpedModelPos2.getX(), lerpedModelPos2.getY(), lerpedModelPos2.getZ(), red, green, blue, alpha, u[i + skip][j + skip], v[i + skip][j + skip], packedOverlayIn, packedLightIn, temp0.getX(), temp0.getY(), temp0.getZ());
+        int m = 0;
+        m = addFanSide(scratch, smoothShading, n, ii, jj, ii + 1, jj, -1, 0, side0, m);
+        m = addFanSide(scratch, smoothShading, n, ii, jj, ii, jj, 0, 1, side3, m);
+        m = addFanSide(scratch, smoothShading, n, ii, jj, ii, jj + 1, 1, 0, side2, m);
+        addFanSide(scratch, smoothShading, n, ii, jj, ii + 1, jj + 1, 0, -1, side1, m);
+        setFanPoint(scratch, smoothShading, n, ii, jj, perimeter, (ii + 0.5F) / cells, (jj + 0.5F) / cells, 0.5F, 0.5F);
+
+        for(m = 0; m < perimeter; m++) {
+            final int next = m + 1 == perimeter ? 0 : m + 1;
+            if(smoothShading) {
+                addFanVertex(scratch, projMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, m);
+                addFanVertex(scratch, projMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, next);
+                addFanVertex(scratch, projMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, perimeter);
+            } else {
+                addTriangle(scratch, projMatrix, normMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, scratch.fanPos, scratch.fanUV, m, next, perimeter);
             }
         }
     }
 
-    private static void transform(Vector3f v3f, Matrix4f m4f) {
-        temp4.set(v3f.getX(), v3f.getY(), v3f.getZ(), 1.0F);
-        temp4.transform(m4f);
-        v3f.set(temp4.getX(), temp4.getY(), temp4.getZ());
+    /**
+     * Adds the vertices along one side of a fan's cell, from its starting corner up to but not including its end.
+     * @param i0 - the lattice position of the side's starting corner, along with {@code j0}
+     * @param di - the direction of the side along the lattice, along with {@code dj}
+     * @param steps - the number of steps the side is split into
+     * @param m - the index of the side's first vertex in the fan
+     * @return the index of the next side's first vertex
+     */
+    private int addFanSide(Scratch scratch, boolean smoothShading, int n, int ii, int jj, int i0, int j0, int di, int dj, int steps, int m) {
+        final int fineCells = (n - 1) * steps;
+        for(int q = 0; q < steps; q++) {
+            final int fineI = i0 * steps + di * q;
+            final int fineJ = j0 * steps + dj * q;
+            setFanPoint(scratch, smoothShading, n, ii, jj, m++, (float) fineI / fineCells, (float) fineJ / fineCells, (float) fineI / steps - ii, (float) fineJ / steps - jj);
+        }
+        return m;
+    }
+
+    /**
+     * Deforms a point of a fan, and when smooth shading, interpolates its normal from the corners of its cell.
+     * @param iSlide - the point's slide along the whole mesh, along with {@code jSlide}
+     * @param cellI - the point's slide across its cell, along with {@code cellJ}
+     */
+    private void setFanPoint(Scratch scratch, boolean smoothShading, int n, int ii, int jj, int m, float iSlide, float jSlide, float cellI, float cellJ) {
+        deformPoint(scratch, iSlide, jSlide, scratch.fanPos, m * 3);
+        scratch.fanUV[m * 2] = bilerp(cornerUV, 0, iSlide, jSlide);
+        scratch.fanUV[m * 2 + 1] = bilerp(cornerUV, 1, iSlide, jSlide);
+        if(smoothShading) {
+            final float[] smoothNorm = scratch.smoothNorm;
+            final int k = jj * n + ii;
+            final Vector3f normal = scratch.temp0;
+            normal.set(
+                    lerp(lerp(smoothNorm[k * 3], smoothNorm[(k + 1) * 3], cellI), lerp(smoothNorm[(k + n) * 3], smoothNorm[(k + n + 1) * 3], cellI), cellJ),
+                    lerp(lerp(smoothNorm[k * 3 + 1], smoothNorm[(k + 1) * 3 + 1], cellI), lerp(smoothNorm[(k + n) * 3 + 1], smoothNorm[(k + n + 1) * 3 + 1], cellI), cellJ),
+                    lerp(lerp(smoothNorm[k * 3 + 2], smoothNorm[(k + 1) * 3 + 2], cellI), lerp(smoothNorm[(k + n) * 3 + 2], smoothNorm[(k + n + 1) * 3 + 2], cellI), cellJ));
+            normal.normalize();
+            scratch.fanNorm[m * 3] = normal.getX();
+            scratch.fanNorm[m * 3 + 1] = normal.getY();
+            scratch.fanNorm[m * 3 + 2] = normal.getZ();
+        }
+    }
+
+    private static void addFanVertex(Scratch scratch, Matrix4f projMatrix, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, int m) {
+        final float[] fanPos = scratch.fanPos;
+        final float[] fanNorm = scratch.fanNorm;
+        final Vector4f temp4 = scratch.temp4;
+        temp4.set(fanPos[m * 3], fanPos[m * 3 + 1], fanPos[m * 3 + 2], 1.0F);
+        temp4.transform(projMatrix);
+        vertexBuilder.addVertex(temp4.getX(), temp4.getY(), temp4.getZ(), red, green, blue, alpha, scratch.fanUV[m * 2], scratch.fanUV[m * 2 + 1], packedOverlayIn, packedLightIn, fanNorm[m * 3], fanNorm[m * 3 + 1], fanNorm[m * 3 + 2]);
+    }
+
+    /**
+     * Adds one flat-shaded triangle between three deformed vertices, given by their indices in arrays of positions
+     * and texture coordinates. Works entirely in the scratch's temporary vectors, so no objects are allocated per
+     * triangle.
+     */
+    private static void addTriangle(Scratch scratch, Matrix4f projMatrix, Matrix3f normMatrix, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, float[] positions, float[] texCoords, int k0, int k1, int k2) {
+        final Vector3f normal = scratch.temp0;
+        sub(positions, k0, k1, normal);
+        sub(positions, k2, k1, scratch.temp1);
+        normal.cross(scratch.temp1);
+        normal.normalize();
+        normal.transform(normMatrix);
+
+        addVertex(scratch, projMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, positions, texCoords, k0, normal);
+        addVertex(scratch, projMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, positions, texCoords, k1, normal);
+        addVertex(scratch, projMatrix, vertexBuilder, packedLightIn, packedOverlayIn, red, green, blue, alpha, positions, texCoords, k2, normal);
+    }
+
+    private static void addVertex(Scratch scratch, Matrix4f projMatrix, IVertexBuilder vertexBuilder, int packedLightIn, int packedOverlayIn, float red, float green, float blue, float alpha, float[] positions, float[] texCoords, int k, Vector3f normal) {
+        final Vector4f temp4 = scratch.temp4;
+        temp4.set(positions[k * 3], positions[k * 3 + 1], positions[k * 3 + 2], 1.0F);
+        temp4.transform(projMatrix);
+        vertexBuilder.addVertex(temp4.getX(), temp4.getY(), temp4.getZ(), red, green, blue, alpha, texCoords[k * 2], texCoords[k * 2 + 1], packedOverlayIn, packedLightIn, normal.getX(), normal.getY(), normal.getZ());
+    }
+
+    /**
+     * Working memory for deforming a mesh and adding its triangles. Arrays are grown as needed and shared by every mesh
+     * drawn on the same thread, so they only ever grow to the most detailed level actually drawn.
+     */
+    private static final class Scratch {
+        private final float[] cornerX = new float[8];
+        private final float[] cornerY = new float[8];
+        private final float[] cornerZ = new float[8];
+        private final float[] weights = new float[8];
+        /** The deformed corners of the mesh being drawn when it is a bilinear patch between them, or null to use the model corners. */
+        private float[] patch;
+        /** The deformed vertices of the lattice being drawn relative to the entity position, indexed by (jj * n + ii) * 3. */
+        private float[] lattice = new float[0];
+        /** The texture coordinates of the lattice being drawn, indexed by (jj * n + ii) * 2. */
+        private float[] texCoords = new float[0];
+        // Transformed positions and normals of the lattice, used when smooth shading
+        private float[] smoothPos = new float[0];
+        private float[] smoothNorm = new float[0];
+        // Deformed positions, texture coordinates and smooth normals of the fan being drawn: its perimeter, then centre
+        private float[] fanPos = new float[0];
+        private float[] fanUV = new float[0];
+        private float[] fanNorm = new float[0];
+        private final Vector3f temp0 = new Vector3f();
+        private final Vector3f temp1 = new Vector3f();
+        private final Vector4f temp4 = new Vector4f();
     }
 }
@@ -0,0 +1,185 @@
+package jigglyslimes.model;
+
+import com.mojang.blaze3d.vertex.IVertexBuilder;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.util.math.MathHelper;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Records vertices already packed in the {@code DefaultVertexFormats.ENTITY} layout, in off-heap memory this stream
+ * owns, so that they can be built on any thread and handed to a {@code BufferBuilder} in one bulk copy. This skips
+ * {@code BufferBuilder}'s element-by-element writes. The colour, overlay and lightmap coordinates are the same for
+ * every vertex of a mesh, so {@link #addVertex} packs them once and reuses them for as long as they do not change. The
+ * element-by-element calls are supported too, for callers that build vertices that way: each element is staged until
+ * {@link #endVertex} packs the whole vertex. The memory is kept between uses and only grows.
+ */
+public final class VertexStream implements IVertexBuilder {
+
+    /**
+     * Bytes per vertex: three floats of position, four bytes of colour, two floats of texture coordinates, two shorts
+     * each of overlay and lightmap coordinates, three bytes of normal and one byte of padding.
+     */
+    public static final int VERTEX_SIZE = 36;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private ByteBuffer data = MemoryUtil.memAlloc(VERTEX_SIZE * 256);
+    private long address = MemoryUtil.memAddress(data);
+    private int vertexCount;
+
+    // The constant attributes last seen, and the same packed as they are written
+    private boolean hasConstants;
+    private float red, green, blue, alpha;
+    private int overlayUV, lightmapUV;
+    private int packedColor, packedOverlay, packedLightmap;
+
+    // The elements of the vertex being built one element at a time, packed as they are written
+    private float stagedX, stagedY, stagedZ;
+    private int stagedColor;
+    private float stagedU, stagedV;
+    private int stagedOverlay, stagedLightmap;
+    private byte stagedNormalX, stagedNormalY, stagedNormalZ;
+
+    /**
+     * Forgets every recorded vertex.
+     */
+    public void reset() {
+        vertexCount = 0;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public void addVertex(float x, float y, float z, float red, float green, float blue, float alpha, float texU, float texV, int overlayUV, int lightmapUV, float normalX, float normalY, float normalZ) {
+        if(!hasConstants || red != this.red || green != this.green || blue != this.blue || alpha != this.alpha || overlayUV != this.overlayUV || lightmapUV != this.lightmapUV) {
+            packConstants(red, green, blue, alpha, overlayUV, lightmapUV);
+        }
+        putVertex(x, y, z, packedColor, texU, texV, packedOverlay, packedLightmap, normalToByte(normalX), normalToByte(normalY), normalToByte(normalZ));
+    }
+
+    private void putVertex(float x, float y, float z, int color, float texU, float texV, int overlay, int lightmap, byte normalX, byte normalY, byte normalZ) {
+        if((vertexCount + 1) * VERTEX_SIZE > data.capacity()) {
+            data = MemoryUtil.memRealloc(data, data.capacity() * 2);
+            address = MemoryUtil.memAddress(data);
+        }
+
+        final long vertex = address + (long) vertexCount * VERTEX_SIZE;
+        MemoryUtil.memPutFloat(vertex, x);
+        MemoryUtil.memPutFloat(vertex + 4, y);
+        MemoryUtil.memPutFloat(vertex + 8, z);
+        MemoryUtil.memPutInt(vertex + 12, color);
+        MemoryUtil.memPutFloat(vertex + 16, texU);
+        MemoryUtil.memPutFloat(vertex + 20, texV);
+        MemoryUtil.memPutInt(vertex + 24, overlay);
+        MemoryUtil.memPutInt(vertex + 28, lightmap);
+        MemoryUtil.memPutByte(vertex + 32, normalX);
+        MemoryUtil.memPutByte(vertex + 33, normalY);
+        MemoryUtil.memPutByte(vertex + 34, normalZ);
+        MemoryUtil.memPutByte(vertex + 35, (byte) 0);
+        vertexCount++;
+    }
+    /**
+     * Packs the attributes shared by every vertex of a mesh the same way {@code BufferBuilder} does, as whole ints in
+     * native byte order.
+     */
+    private void packConstants(float red, float green, float blue, float alpha, int overlayUV, int lightmapUV) {
+        hasConstants = true;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.alpha = alpha;
+        this.overlayUV = overlayUV;
+        this.lightmapUV = lightmapUV;
+        packedColor = packBytes((int) (red * 255.0F), (int) (green * 255.0F), (int) (blue * 255.0F), (int) (alpha * 255.0F));
+        packedOverlay = packShorts(overlayUV & 65535, overlayUV >> 16 & 65535);
+        packedLightmap = packShorts(lightmapUV & 65535, lightmapUV >> 16 & 65535);
+    }
+
+    /**
+     * @return four bytes packed into an int that is written to memory in the order given
+     */
+    private static int packBytes(int b0, int b1, int b2, int b3) {
+        b0 &= 255;
+        b1 &= 255;
+        b2 &= 255;
+        b3 &= 255;
+        return LITTLE_ENDIAN ? b0 | b1 << 8 | b2 << 16 | b3 << 24 : b0 << 24 | b1 << 16 | b2 << 8 | b3;
+    }
+
+    /**
+     * @return two shorts packed into an int that is written to memory in the order given
+     */
+    private static int packShorts(int s0, int s1) {
+        return LITTLE_ENDIAN ? s0 | s1 << 16 : s0 << 16 | s1;
+    }
+
+    private static byte normalToByte(float f) {
+        return (byte) ((int) (MathHelper.clamp(f, -1.0F, 1.0F) * 127.0F) & 255);
+    }
+
+    /**
+     * Appends every recorded vertex to a {@code BufferBuilder} in one copy. It must be building with
+     * {@code DefaultVertexFormats.ENTITY}.
+     */
+    public void copyTo(BufferBuilder bufferBuilder) {
+        if(vertexCount == 0) return;
+        data.clear();
+        data.limit(vertexCount * VERTEX_SIZE);
+        bufferBuilder.putBulkData(data);
+        data.clear();
+    }
+
+    @Override
+    public IVertexBuilder pos(double x, double y, double z) {
+        stagedX = (float) x;
+        stagedY = (float) y;
+        stagedZ = (float) z;
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder color(int red, int green, int blue, int alpha) {
+        stagedColor = packBytes(red, green, blue, alpha);
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder tex(float u, float v) {
+        stagedU = u;
+        stagedV = v;
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder overlay(int u, int v) {
+        stagedOverlay = packShorts(u & 65535, v & 65535);
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder lightmap(int u, int v) {
+        stagedLightmap = packShorts(u & 65535, v & 65535);
+        return this;
+    }
+
+    @Override
+    public IVertexBuilder normal(float x, float y, float z) {
+        stagedNormalX = normalToByte(x);
+        stagedNormalY = normalToByte(y);
+        stagedNormalZ = normalToByte(z);
+        return this;
+    }
+
+    /**
+     * Packs the vertex staged by the element-by-element calls. Elements not set since the last vertex keep their
+     * previous values.
+     */
+    @Override
+    public void endVertex() {
+        putVertex(stagedX, stagedY, stagedZ, stagedColor, stagedU, stagedV, stagedOverlay, stagedLightmap, stagedNormalX, stagedNormalY, stagedNormalZ);
+    }
+}
@@ -0,0 +1,57 @@
+package jigglyslimes.physics;
+
+/**
+ * Accumulates the spring and restoring accelerations at the current positions into the velocities, then moves the bits
+ * by their new velocities (semi-implicit Euler). Stable only while the step is short compared to the period of the
+ * stiffest spring.
+ */
+final class ExplicitIntegrator implements Integrator {
+
+    @Override
+    public void step(JigglyBitStore<?> s, int slot, float dt, PhysicsParams params) {
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        final SlimeProfile profile = s.profile[slot];
+        final float rigidity = params.rigidity;
+
+        // Calculates the acceleration and updates velocity of each jiggly bit due to compressive and tensile forces.
+        for(int spring = 0; spring < SlimeShape.NUM_SPRINGS; spring++) {
+            calculateInteraction(s, first + SlimeShape.SPRING_A[spring], first + SlimeShape.SPRING_B[spring], SlimeShape.restLength(spring, profile), rigidity, dt);
+        }
+
+        SlimeShape.applyDrag(s, slot, params.internalFriction, dt);
+
+        // Calculates the acceleration and updates velocity of each jiggly bit due to forces that restore rotation and relative position.
+        final float accelMagnitude = SlimeShape.restoringStiffness(profile, rigidity);
+        for(int i = 0; i < 8; i++) {
+            final int b = first + i;
+            s.velX[b] += (SlimeShape.restX(s, slot, i) - s.posX[b]) * accelMagnitude * dt;
+            s.velY[b] += (SlimeShape.restY(s, slot, i) - s.posY[b]) * accelMagnitude * dt;
+            s.velZ[b] += (SlimeShape.restZ(s, slot, i) - s.posZ[b]) * accelMagnitude * dt;
+        }
+
+        for(int b = first; b < last; b++) {
+            s.posX[b] += s.velX[b] * dt;
+            s.posY[b] += s.velY[b] * dt;
+            s.posZ[b] += s.velZ[b] * dt;
+        }
+    }
+
+    private static void calculateInteraction(JigglyBitStore<?> s, int b1, int b2, float preferredDist, float rigidity, float dt) {
+        float dx = s.posX[b2] - s.posX[b1];
+        float dy = s.posY[b2] - s.posY[b1];
+        float dz = s.posZ[b2] - s.posZ[b1];
+        float dist = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        float accelMagnitude = dist == 0.0 ? 0.0F : rigidity * (dist * dist - preferredDist * preferredDist) / (2 * dist * preferredDist);
+        final float dvScale = accelMagnitude * dt;
+        dx *= dvScale;
+        dy *= dvScale;
+        dz *= dvScale;
+        s.velX[b1] += dx;
+        s.velY[b1] += dy;
+        s.velZ[b1] += dz;
+        s.velX[b2] -= dx;
+        s.velY[b2] -= dy;
+        s.velZ[b2] -= dz;
+    }
+}
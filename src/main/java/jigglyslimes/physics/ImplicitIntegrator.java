@@ -0,0 +1,63 @@
+package jigglyslimes.physics;
+
+/**
+ * Solves implicit (backward) Euler for each spring on its own, in turn, then moves the bits by their new velocities.
+ * Each spring's force is linearized along its current direction, which turns its update into a closed-form division
+ * that damps rather than amplifies however stiff the spring or long the step. The pull of each bit back to its rest
+ * position is solved the same way.
+ */
+final class ImplicitIntegrator implements Integrator {
+
+    @Override
+    public void step(JigglyBitStore<?> s, int slot, float dt, PhysicsParams params) {
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        final SlimeProfile profile = s.profile[slot];
+        final float rigidity = params.rigidity;
+
+        // Both ends of a spring accelerate at rigidity * stretch, so the stretch accelerates at twice that.
+        final float springDenominator = 1.0F + 2.0F * rigidity * dt * dt;
+        for(int spring = 0; spring < SlimeShape.NUM_SPRINGS; spring++) {
+            final int b1 = first + SlimeShape.SPRING_A[spring];
+            final int b2 = first + SlimeShape.SPRING_B[spring];
+            float nx = s.posX[b2] - s.posX[b1];
+            float ny = s.posY[b2] - s.posY[b1];
+            float nz = s.posZ[b2] - s.posZ[b1];
+            final float dist = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if(dist == 0.0F) continue;
+            nx /= dist;
+            ny /= dist;
+            nz /= dist;
+
+            // Solve u' = u - 2 * rigidity * dt * (stretch + dt * u') for the new rate of stretching u'.
+            final float stretch = dist - SlimeShape.restLength(spring, profile);
+            final float u = (s.velX[b2] - s.velX[b1]) * nx + (s.velY[b2] - s.velY[b1]) * ny + (s.velZ[b2] - s.velZ[b1]) * nz;
+            final float newU = (u - 2.0F * rigidity * dt * stretch) / springDenominator;
+            final float dv = (newU - u) / 2;
+            s.velX[b1] -= nx * dv;
+            s.velY[b1] -= ny * dv;
+            s.velZ[b1] -= nz * dv;
+            s.velX[b2] += nx * dv;
+            s.velY[b2] += ny * dv;
+            s.velZ[b2] += nz * dv;
+        }
+
+        SlimeShape.applyDrag(s, slot, params.internalFriction, dt);
+
+        // Solve v' = v + k * dt * (target - x - dt * v') for each bit.
+        final float k = SlimeShape.restoringStiffness(profile, rigidity);
+        final float restoringDenominator = 1.0F + k * dt * dt;
+        for(int i = 0; i < 8; i++) {
+            final int b = first + i;
+            s.velX[b] = (s.velX[b] + k * dt * (SlimeShape.restX(s, slot, i) - s.posX[b])) / restoringDenominator;
+            s.velY[b] = (s.velY[b] + k * dt * (SlimeShape.restY(s, slot, i) - s.posY[b])) / restoringDenominator;
+            s.velZ[b] = (s.velZ[b] + k * dt * (SlimeShape.restZ(s, slot, i) - s.posZ[b])) / restoringDenominator;
+        }
+
+        for(int b = first; b < last; b++) {
+            s.posX[b] += s.velX[b] * dt;
+            s.posY[b] += s.velY[b] * dt;
+            s.posZ[b] += s.velZ[b] * dt;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package jigglyslimes.physics;
+
+/**
+ * Advances the jiggly bits of a slot under the slime's own spring, drag and restoring forces, then moves them. Forces
+ * from the world have already been applied to the velocities, once per tick, before the tick's first step. Implementations hold no state, so one
+ * instance may step disjoint slots on several threads at once.
+ */
+public interface Integrator {
+
+    /**
+     * Steps one slot. The slot's snapshotted entity state must be up to date.
+     * @param s - the store holding the slot
+     * @param slot - the slot to step
+     * @param dt - the length of the step in seconds
+     * @param params - the material settings to step with
+     */
+    void step(JigglyBitStore<?> s, int slot, float dt, PhysicsParams params);
+
+    enum Type {
+        /** Explicit forces with a semi-implicit Euler step; cheap, but needs short steps for stiff slimes. */
+        EXPLICIT(new ExplicitIntegrator()),
+        /** Position-based dynamics with compliant constraints; stable at any stiffness. */
+        VERLET(new VerletIntegrator()),
+        /** Implicit Euler solved spring by spring; stable at any stiffness and closest to the explicit step's look. */
+        IMPLICIT(new ImplicitIntegrator());
+
+        public final Integrator integrator;
+
+        Type(Integrator integrator) {
+            this.integrator = integrator;
+        }
+    }
+}
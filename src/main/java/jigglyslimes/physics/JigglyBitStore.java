@@ -0,0 +1,149 @@
+package jigglyslimes.physics;
+
+import java.util.Arrays;
+
+/**
+ * Pooled structure-of-arrays storage for the jiggly bits of every simulated slime. Each slime is given a slot, which
+ * owns {@value #BITS_PER_SLOT} consecutive entries in each of the flat component arrays, so stepping the simulation
+ * walks linearly through memory instead of chasing one small vector object per bit. Released slots are reused before
+ * the store grows.
+ * @param <T> - the type of object owning a slot
+ */
+public final class JigglyBitStore<T> {
+
+    public static final int BITS_PER_SLOT = 8;
+
+    private static final int INITIAL_CAPACITY = 64; // In slots
+
+    // Per-bit components, indexed by slot * BITS_PER_SLOT + bit. Coordinates are relative to the entity origin
+    // (non-rotated).
+    public float[] prevPosX, prevPosY, prevPosZ;
+    public float[] posX, posY, posZ;
+    public float[] velX, velY, velZ;
+
+    // Per-slot components. The entity's prevPos and lastTickPos variables are set to the current position just before
+    // it is updated, so this stores the entity's previous position.
+    public float[] entityPrevPosX, entityPrevPosY, entityPrevPosZ;
+
+    // Per-slot entity state, snapshotted on the main thread before each step so that the internal forces can be
+    // computed without touching the entity or the world. The cosine and sine are only recomputed when the yaw changes.
+    public SlimeProfile[] profile;
+    public float[] yaw;
+    public float[] cosYaw, sinYaw;
+    public boolean[] upsideDown;
+
+    private Object[] owners;
+    private int capacity;
+    /** One past the highest slot that has ever been handed out. */
+    private int slotLimit;
+    private int[] freeSlots;
+    private int numFreeSlots;
+
+    public JigglyBitStore() {
+        resize(INITIAL_CAPACITY);
+        freeSlots = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Hands out an unused slot with all of its bits at the entity origin and at rest.
+     * @param owner - the object the slot belongs to
+     * @param entityX - the x-coordinate of the owning entity
+     * @param entityY - the y-coordinate of the owning entity
+     * @param entityZ - the z-coordinate of the owning entity
+     * @return the slot handle
+     */
+    public int allocate(T owner, float entityX, float entityY, float entityZ) {
+        final int slot;
+        if(numFreeSlots > 0) {
+            slot = freeSlots[--numFreeSlots];
+        } else {
+            if(slotLimit == capacity) resize(capacity * 2);
+            slot = slotLimit++;
+        }
+
+        final int from = slot * BITS_PER_SLOT;
+        final int to = from + BITS_PER_SLOT;
+        Arrays.fill(prevPosX, from, to, 0.0F);
+        Arrays.fill(prevPosY, from, to, 0.0F);
+        Arrays.fill(prevPosZ, from, to, 0.0F);
+        Arrays.fill(posX, from, to, 0.0F);
+        Arrays.fill(posY, from, to, 0.0F);
+        Arrays.fill(posZ, from, to, 0.0F);
+        Arrays.fill(velX, from, to, 0.0F);
+        Arrays.fill(velY, from, to, 0.0F);
+        Arrays.fill(velZ, from, to, 0.0F);
+        entityPrevPosX[slot] = entityX;
+        entityPrevPosY[slot] = entityY;
+        entityPrevPosZ[slot] = entityZ;
+        profile[slot] = null;
+        yaw[slot] = Float.NaN;
+        owners[slot] = owner;
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the pool. The handle must not be used afterwards.
+     */
+    public void release(int slot) {
+        owners[slot] = null;
+        profile[slot] = null;
+        if(numFreeSlots == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        freeSlots[numFreeSlots++] = slot;
+    }
+
+    /**
+     * Releases every slot at once, e.g. when the world is unloaded.
+     */
+    public void clear() {
+        Arrays.fill(owners, 0, slotLimit, null);
+        Arrays.fill(profile, 0, slotLimit, null);
+        slotLimit = 0;
+        numFreeSlots = 0;
+    }
+
+    /**
+     * @return one past the highest slot in use; every allocated slot is below this
+     */
+    public int getSlotLimit() {
+        return slotLimit;
+    }
+
+    /**
+     * @return the owner of a slot, or null if the slot is free
+     */
+    @SuppressWarnings("unchecked")
+    public T getOwner(int slot) {
+        return (T) owners[slot];
+    }
+
+    /**
+     * @return the index of the first jiggly bit belonging to a slot
+     */
+    public static int firstBit(int slot) {
+        return slot * BITS_PER_SLOT;
+    }
+
+    private void resize(int newCapacity) {
+        final int bits = newCapacity * BITS_PER_SLOT;
+        if(capacity == 0) {
+            prevPosX = new float[bits]; prevPosY = new float[bits]; prevPosZ = new float[bits];
+            posX = new float[bits]; posY = new float[bits]; posZ = new float[bits];
+            velX = new float[bits]; velY = new float[bits]; velZ = new float[bits];
+            entityPrevPosX = new float[newCapacity]; entityPrevPosY = new float[newCapacity]; entityPrevPosZ = new float[newCapacity];
+            profile = new SlimeProfile[newCapacity]; yaw = new float[newCapacity];
+            cosYaw = new float[newCapacity]; sinYaw = new float[newCapacity];
+            upsideDown = new boolean[newCapacity];
+            owners = new Object[newCapacity];
+        } else {
+            prevPosX = Arrays.copyOf(prevPosX, bits); prevPosY = Arrays.copyOf(prevPosY, bits); prevPosZ = Arrays.copyOf(prevPosZ, bits);
+            posX = Arrays.copyOf(posX, bits); posY = Arrays.copyOf(posY, bits); posZ = Arrays.copyOf(posZ, bits);
+            velX = Arrays.copyOf(velX, bits); velY = Arrays.copyOf(velY, bits); velZ = Arrays.copyOf(velZ, bits);
+            entityPrevPosX = Arrays.copyOf(entityPrevPosX, newCapacity); entityPrevPosY = Arrays.copyOf(entityPrevPosY, newCapacity); entityPrevPosZ = Arrays.copyOf(entityPrevPosZ, newCapacity);
+            profile = Arrays.copyOf(profile, newCapacity); yaw = Arrays.copyOf(yaw, newCapacity);
+            cosYaw = Arrays.copyOf(cosYaw, newCapacity); sinYaw = Arrays.copyOf(sinYaw, newCapacity);
+            upsideDown = Arrays.copyOf(upsideDown, newCapacity);
+            owners = Arrays.copyOf(owners, newCapacity);
+        }
+        capacity = newCapacity;
+    }
+}
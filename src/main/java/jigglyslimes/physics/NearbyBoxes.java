@@ -0,0 +1,49 @@
+package jigglyslimes.physics;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of the axis-aligned bounding boxes near a slime, each with the position of the object it belongs to.
+ * Filled in by {@link SlimeWorld#gatherNearbyBoxes}; grows as needed and never shrinks, so that gathering allocates
+ * nothing once it has warmed up.
+ */
+public final class NearbyBoxes {
+
+    // Six bounds (min x, y, z then max x, y, z) and three owner coordinates per box
+    double[] bounds = new double[6 * 16];
+    double[] owners = new double[3 * 16];
+    int size;
+
+    /**
+     * Adds a box.
+     * @param ownerX - the x-coordinate of the object the box belongs to
+     * @param ownerY - the y-coordinate of the object the box belongs to
+     * @param ownerZ - the z-coordinate of the object the box belongs to
+     */
+    public void add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, double ownerX, double ownerY, double ownerZ) {
+        if(size * 6 == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            owners = Arrays.copyOf(owners, owners.length * 2);
+        }
+        final int box = size * 6;
+        bounds[box] = minX;
+        bounds[box + 1] = minY;
+        bounds[box + 2] = minZ;
+        bounds[box + 3] = maxX;
+        bounds[box + 4] = maxY;
+        bounds[box + 5] = maxZ;
+        final int owner = size * 3;
+        owners[owner] = ownerX;
+        owners[owner + 1] = ownerY;
+        owners[owner + 2] = ownerZ;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,73 @@
+package jigglyslimes.physics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs work over a range of {@link JigglyBitStore} slots, either on the calling thread or split across a dedicated
+ * {@code ForkJoinPool}. Work handed to this class must only touch the slots in the range it is given.
+ */
+public final class ParallelSlots {
+
+    /** Ranges smaller than this are never split; forking costs more than stepping a handful of slimes. */
+    private static final int MIN_SLOTS_PER_TASK = 32;
+
+    private static ForkJoinPool pool;
+
+    @FunctionalInterface
+    public interface RangeAction {
+        /**
+         * @param fromSlot - the first slot to process, inclusive
+         * @param toSlot - the last slot to process, exclusive
+         */
+        void apply(int fromSlot, int toSlot);
+    }
+
+    /**
+     * Applies an action to the slots {@code [0, slotLimit)}, blocking until all of them are done.
+     * @param numThreads - the number of threads to spread the work over; 1 runs everything on the calling thread
+     */
+    public static void forEach(int numThreads, int slotLimit, RangeAction action) {
+        if(numThreads <= 1 || slotLimit <= MIN_SLOTS_PER_TASK) {
+            action.apply(0, slotLimit);
+        } else {
+            final int grain = Math.max(MIN_SLOTS_PER_TASK, slotLimit / (numThreads * 4));
+            getPool(numThreads).invoke(new RangeTask(action, 0, slotLimit, grain));
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool(int numThreads) {
+        if(pool == null || pool.getParallelism() != numThreads) {
+            if(pool != null) pool.shutdown();
+            pool = new ForkJoinPool(numThreads, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("Jiggly Slimes Physics #" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final RangeAction action;
+        private final int from, to, grain;
+
+        RangeTask(RangeAction action, int from, int to, int grain) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= grain) {
+                action.apply(from, to);
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(action, from, mid, grain), new RangeTask(action, mid, to, grain));
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package jigglyslimes.physics;
+
+/**
+ * The material settings slimes are simulated with, resolved once from the config. Instances never change; reloading
+ * the config builds a new one, which is swapped in between ticks so that a step never mixes old and new values.
+ */
+public final class PhysicsParams {
+
+    /** The factor velocities keep when rubbing against a block or entity each tick; lower = more friction. */
+    public final float collisionFriction;
+    /** In kg/m^3. */
+    public final float density;
+    /** The strength of the drag between jiggly bits moving relative to each other. */
+    public final float internalFriction;
+    /** The stiffness of the springs and of the pull back to the rest shape. */
+    public final float rigidity;
+
+    public PhysicsParams(float collisionFriction, float density, float internalFriction, float rigidity) {
+        this.collisionFriction = collisionFriction;
+        this.density = density;
+        this.internalFriction = internalFriction;
+        this.rigidity = rigidity;
+    }
+}
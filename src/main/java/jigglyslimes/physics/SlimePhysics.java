@@ -0,0 +1,299 @@
+package jigglyslimes.physics;
+
+/**
+ * Simulates the jiggly bits of a population of slimes. Nothing here depends on the game: the slimes and the world
+ * around them are only read through a {@link SlimeWorld}, and which slimes are stepped each tick is decided by a
+ * {@link StepScheduler}, so the same core runs in the client and headless.
+ * @param <T> - the type of object representing a slime
+ */
+public final class SlimePhysics<T> {
+
+    public static final float GRAVITY = -32.0F; // In m/s^2
+    public static final float AIR_DENSITY = 1.2F; // In kg/m^3
+
+    public final JigglyBitStore<T> store = new JigglyBitStore<>();
+    private final SlimeWorld<T> world;
+    private final ParallelSlots.RangeAction internalForces = this::applyInternalForces;
+
+    // The boxes near the slime being stepped and the velocities friction pulls the bits towards, reused by every slime
+    private final NearbyBoxes nearbyBoxes = new NearbyBoxes();
+    private float[] nearbyVels = new float[3 * 16];
+    // The number of ticks each slot is stepped by this tick; 0 if it is not stepped
+    private int[] stepTicks = new int[64];
+    // The collision friction compounded over each number of ticks a slot can be stepped by this tick
+    private float[] collisionFrictions = new float[2];
+    // The settings for this update, read by the worker threads
+    private PhysicsParams params;
+    private Integrator integrator;
+    private int substeps;
+
+    public SlimePhysics(SlimeWorld<T> world) {
+        this.world = world;
+    }
+
+    /**
+     * Starts simulating a slime, with its jiggly bits at rest at its origin.
+     * @return the slot holding the slime's jiggly bits
+     */
+    public int add(T slime) {
+        return store.allocate(slime, (float) world.getX(slime), (float) world.getY(slime), (float) world.getZ(slime));
+    }
+
+    /**
+     * Stops simulating the slime in a slot. The slot must not be used afterwards.
+     */
+    public void remove(int slot) {
+        store.release(slot);
+    }
+
+    /**
+     * Stops simulating every slime at once.
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    /**
+     * Steps the jiggly bits of every slime the scheduler picks for this tick. Called once per tick, after the slimes
+     * themselves have moved. The forces from the world are applied to the velocities first, on the calling thread, as
+     * they query the world. The state of each slime is snapshotted too, so that the internal forces can then be
+     * stepped, and the bits moved, on several threads without touching the world.
+     * @param scheduler - decides which slimes are stepped, and by how many ticks
+     * @param params - the material settings to step with
+     * @param integrator - the integrator to step the internal forces with
+     * @param substeps - the number of substeps each tick is split into
+     * @param numThreads - the number of threads to step the internal forces on
+     */
+    public void update(StepScheduler<? super T> scheduler, PhysicsParams params, Integrator integrator, int substeps, int numThreads) {
+        final JigglyBitStore<T> s = store;
+        final int slotLimit = s.getSlotLimit();
+        if(stepTicks.length < slotLimit) stepTicks = new int[Math.max(stepTicks.length * 2, slotLimit)];
+
+        int maxTicks = 1;
+        for(int slot = 0; slot < slotLimit; slot++) {
+            final T slime = s.getOwner(slot);
+            if(slime == null) {
+                stepTicks[slot] = 0;
+                continue;
+            }
+
+            final int ticks = scheduler.schedule(slot, slime);
+            stepTicks[slot] = ticks;
+            maxTicks = Math.max(maxTicks, ticks);
+            if(ticks > 0) {
+                snapshot(slot, slime);
+                if(scheduler.consumeSnap(slot)) snapToRestShape(slot);
+            } else {
+                holdStill(slot, slime, scheduler.isAsleep(slot));
+            }
+        }
+
+        this.params = params;
+        this.integrator = integrator;
+        this.substeps = substeps;
+        compoundCollisionFriction(params.collisionFriction, maxTicks);
+        for(int slot = 0; slot < slotLimit; slot++) {
+            final T slime = s.getOwner(slot);
+            if(slime != null && stepTicks[slot] > 0) applyExternalForces(slot, slime, stepTicks[slot]);
+        }
+
+        ParallelSlots.forEach(numThreads, slotLimit, internalForces);
+
+        for(int slot = 0; slot < slotLimit; slot++) {
+            final T slime = s.getOwner(slot);
+            if(slime != null && stepTicks[slot] > 0) scheduler.afterStep(slot, slime, getMaxSpeedSq(slot), stepTicks[slot]);
+        }
+    }
+
+    /**
+     * Fills {@link #collisionFrictions} for steps of up to a number of ticks. Friction is applied once per tick when
+     * stepping every tick, so a longer step applies it compounded over its ticks.
+     */
+    private void compoundCollisionFriction(float collisionFriction, int maxTicks) {
+        if(collisionFrictions.length <= maxTicks) collisionFrictions = new float[Math.max(collisionFrictions.length * 2, maxTicks + 1)];
+        collisionFrictions[0] = 1.0F;
+        for(int ticks = 1; ticks <= maxTicks; ticks++) {
+            collisionFrictions[ticks] = collisionFrictions[ticks - 1] * collisionFriction;
+        }
+    }
+
+    /**
+     * Keeps a slot that is not stepped this tick where it is, so that it is not drawn moving between its last two
+     * positions again. A sleeping slot also follows the slime, so that the slime's movement while it slept is not
+     * taken as a sudden jolt once it wakes.
+     */
+    private void holdStill(int slot, T slime, boolean asleep) {
+        final JigglyBitStore<T> s = store;
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        for(int b = first; b < last; b++) {
+            s.prevPosX[b] = s.posX[b];
+            s.prevPosY[b] = s.posY[b];
+            s.prevPosZ[b] = s.posZ[b];
+        }
+        if(asleep) {
+            s.entityPrevPosX[slot] = (float) world.getX(slime);
+            s.entityPrevPosY[slot] = (float) world.getY(slime);
+            s.entityPrevPosZ[slot] = (float) world.getZ(slime);
+        }
+    }
+
+    /**
+     * Puts the jiggly bits of a slot at rest in the shape they are pulled towards. Must be called after the slot's
+     * slime has been snapshotted.
+     */
+    private void snapToRestShape(int slot) {
+        final JigglyBitStore<T> s = store;
+        final int first = JigglyBitStore.firstBit(slot);
+        for(int i = 0; i < 8; i++) {
+            final int b = first + i;
+            s.posX[b] = s.prevPosX[b] = SlimeShape.restX(s, slot, i);
+            s.posY[b] = s.prevPosY[b] = SlimeShape.restY(s, slot, i);
+            s.posZ[b] = s.prevPosZ[b] = SlimeShape.restZ(s, slot, i);
+            s.velX[b] = 0.0F;
+            s.velY[b] = 0.0F;
+            s.velZ[b] = 0.0F;
+        }
+    }
+
+    private void snapshot(int slot, T slime) {
+        final JigglyBitStore<T> s = store;
+        final SlimeProfile profile = s.profile[slot];
+        if(profile == null || profile.width != world.getWidth(slime) || profile.height != world.getHeight(slime)) {
+            s.profile[slot] = world.getProfile(slime);
+        }
+        final float yaw = world.getYaw(slime);
+        if(yaw != s.yaw[slot]) {
+            s.yaw[slot] = yaw;
+            s.cosYaw[slot] = (float) Math.cos(Math.toRadians(yaw));
+            s.sinYaw[slot] = (float) Math.sin(Math.toRadians(yaw));
+        }
+        s.upsideDown[slot] = world.isUpsideDown(slime);
+    }
+
+    /**
+     * Steps the jiggly bits in a range of slots under the slime's own spring, drag and restoring forces, using
+     * {@link #integrator}, and moves them. Only reads the snapshotted state, so it is safe to call from worker threads
+     * on disjoint ranges. Each tick a slot is stepped by is split into {@link #substeps} substeps.
+     */
+    private void applyInternalForces(int fromSlot, int toSlot) {
+        final JigglyBitStore<T> s = store;
+        final PhysicsParams params = this.params;
+        final Integrator integrator = this.integrator;
+        final int substeps = this.substeps;
+        final float dt = 0.05F / substeps;
+        for(int slot = fromSlot; slot < toSlot; slot++) {
+            final int ticks = stepTicks[slot];
+            if(ticks == 0) continue;
+
+            final int first = JigglyBitStore.firstBit(slot);
+            final int last = first + JigglyBitStore.BITS_PER_SLOT;
+            for(int b = first; b < last; b++) {
+                s.prevPosX[b] = s.posX[b];
+                s.prevPosY[b] = s.posY[b];
+                s.prevPosZ[b] = s.posZ[b];
+            }
+            for(int substep = ticks * substeps; substep > 0; substep--) {
+                integrator.step(s, slot, dt, params);
+            }
+        }
+    }
+
+    /**
+     * Updates the velocities of the jiggly bits in one slot due to the world around the slime, at the positions the
+     * bits have before they are moved. The integrator then moves the bits under these velocities in the same step, so
+     * that a bit stopped by a block does not first move into it.
+     * @param slot - the slot to step
+     * @param slime - the slime owning the slot
+     * @param ticks - the number of ticks since the slot was last stepped
+     */
+    private void applyExternalForces(int slot, T slime, int ticks) {
+        final JigglyBitStore<T> s = store;
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+
+        // Apply gravity, atmospheric buoyancy, and friction due to collisions with blocks and entities. Friction acts on
+        // velocities relative to the world, or to the collided entity, while they are stored relative to the slime.
+        final double slimeX = world.getX(slime);
+        final double slimeY = world.getY(slime);
+        final double slimeZ = world.getZ(slime);
+        final float dt = ticks * 0.05F;
+        final float slimeVelX = (float) ((slimeX - s.entityPrevPosX[slot]) / dt);
+        final float slimeVelY = (float) ((slimeY - s.entityPrevPosY[slot]) / dt);
+        final float slimeVelZ = (float) ((slimeZ - s.entityPrevPosZ[slot]) / dt);
+        final float airDensityRatio = AIR_DENSITY / params.density;
+        final float gravityDeltaV = world.hasGravity(slime) ? (1.0F - airDensityRatio) * GRAVITY * dt : 0.0F;
+        final float collisionFriction = collisionFrictions[ticks];
+        final int numNearby = gatherNearbyBoxes(slot, slime, dt);
+        final double[] bounds = nearbyBoxes.bounds;
+        for(int b = first; b < last; b++) {
+            final double x = slimeX + s.posX[b];
+            final double y = slimeY + s.posY[b];
+            final double z = slimeZ + s.posZ[b];
+            float vx = s.velX[b] + slimeVelX;
+            float vy = s.velY[b] + slimeVelY;
+            float vz = s.velZ[b] + slimeVelZ;
+
+            if(world.isSolidOrLiquid(x, y, z)) {
+                vx *= collisionFriction;
+                vy *= collisionFriction;
+                vz *= collisionFriction;
+            } else {
+                vy += gravityDeltaV;
+            }
+
+            for(int c = 0; c < numNearby; c++) {
+                final int box = c * 6;
+                if(x >= bounds[box] && x < bounds[box + 3] && y >= bounds[box + 1] && y < bounds[box + 4] && z >= bounds[box + 2] && z < bounds[box + 5]) {
+                    final int vel = c * 3;
+                    vx = (vx - nearbyVels[vel]) * collisionFriction + nearbyVels[vel];
+                    vy = (vy - nearbyVels[vel + 1]) * collisionFriction + nearbyVels[vel + 1];
+                    vz = (vz - nearbyVels[vel + 2]) * collisionFriction + nearbyVels[vel + 2];
+                }
+            }
+
+            s.velX[b] = vx - slimeVelX;
+            s.velY[b] = vy - slimeVelY;
+            s.velZ[b] = vz - slimeVelZ;
+        }
+
+        s.entityPrevPosX[slot] = (float) slimeX;
+        s.entityPrevPosY[slot] = (float) slimeY;
+        s.entityPrevPosZ[slot] = (float) slimeZ;
+    }
+
+    /**
+     * @return the greatest squared speed of a slot's jiggly bits relative to the slime
+     */
+    private float getMaxSpeedSq(int slot) {
+        final JigglyBitStore<T> s = store;
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        float maxSpeedSq = 0.0F;
+        for(int b = first; b < last; b++) {
+            maxSpeedSq = Math.max(maxSpeedSq, s.velX[b] * s.velX[b] + s.velY[b] * s.velY[b] + s.velZ[b] * s.velZ[b]);
+        }
+        return maxSpeedSq;
+    }
+
+    /**
+     * Finds the boxes a slime's jiggly bits could be touching, with one world query for the whole slime, and works out
+     * the velocities that friction pulls the bits towards into {@link #nearbyVels}.
+     * @return the number of boxes found
+     */
+    private int gatherNearbyBoxes(int slot, T slime, float dt) {
+        final JigglyBitStore<T> s = store;
+        nearbyBoxes.clear();
+        world.gatherNearbyBoxes(slime, nearbyBoxes);
+        final int numNearby = nearbyBoxes.size;
+        if(numNearby * 3 > nearbyVels.length) nearbyVels = new float[nearbyBoxes.owners.length];
+        final double[] owners = nearbyBoxes.owners;
+        for(int c = 0; c < numNearby; c++) {
+            final int vel = c * 3;
+            nearbyVels[vel] = (float) ((owners[vel] - s.entityPrevPosX[slot]) / dt);
+            nearbyVels[vel + 1] = (float) ((owners[vel + 1] - s.entityPrevPosY[slot]) / dt);
+            nearbyVels[vel + 2] = (float) ((owners[vel + 2] - s.entityPrevPosZ[slot]) / dt);
+        }
+        return numNearby;
+    }
+}
@@ -0,0 +1,28 @@
+package jigglyslimes.physics;
+
+/**
+ * The constants derived from a slime's dimensions that its physics step uses. Slimes only come in a few sizes, so one
+ * profile is shared by every slime of the same type and size rather than recomputed for each slime every step.
+ */
+public final class SlimeProfile {
+
+    public final float width;
+    public final float height;
+    public final float halfWidth;
+    /** The length of a body diagonal, from a bottom corner to the opposite top corner. */
+    public final float diagonal;
+    /** Surface area over volume. Represents metabolism; larger creatures tend to move slower. */
+    public final float surfaceToVolume;
+    /** The inverse cube root of the volume, which scales the internal drag. */
+    public final float invCubeRootVolume;
+
+    public SlimeProfile(float width, float height) {
+        this.width = width;
+        this.height = height;
+        this.halfWidth = width / 2;
+        this.diagonal = (float) Math.sqrt(width * width + width * width + height * height);
+        final float volume = width * width * height;
+        this.surfaceToVolume = (2 * width * width + 4 * width * height) / volume;
+        this.invCubeRootVolume = (float) (1.0 / Math.cbrt(volume));
+    }
+}
@@ -0,0 +1,84 @@
+package jigglyslimes.physics;
+
+/**
+ * The springs joining the eight jiggly bits of a slime and the shape they are pulled back into. Bit i sits at the high
+ * end of the model's x-axis if bit 2 of i is set, of the y-axis if bit 1 is set, and of the z-axis if bit 0 is set.
+ */
+public final class SlimeShape {
+
+    public static final int NUM_SPRINGS = 16;
+
+    /** The bits at either end of each spring: four along each axis, then the four body diagonals. */
+    static final int[] SPRING_A = {0, 1, 2, 3, 0, 1, 4, 5, 0, 2, 4, 6, 0, 1, 2, 3};
+    static final int[] SPRING_B = {4, 5, 6, 7, 2, 3, 6, 7, 1, 3, 5, 7, 7, 6, 5, 4};
+
+    private SlimeShape() {}
+
+    /**
+     * @return the length a spring relaxes to in a slime with the given profile
+     */
+    static float restLength(int spring, SlimeProfile profile) {
+        if(spring >= 12) return profile.diagonal;
+        return spring >= 4 && spring < 8 ? profile.height : profile.width;
+    }
+
+    /**
+     * @return the acceleration per unit of displacement pulling each bit back to its rest position
+     */
+    static float restoringStiffness(SlimeProfile profile, float rigidity) {
+        return rigidity * profile.surfaceToVolume;
+    }
+
+    /**
+     * @return the x-coordinate, relative to the entity, of a bit's rest position in a slot
+     */
+    public static float restX(JigglyBitStore<?> s, int slot, int bit) {
+        final float halfWidth = s.profile[slot].halfWidth;
+        final float xx = (((bit & 0x04) == 0x00) != s.upsideDown[slot]) ? -halfWidth : halfWidth;
+        final float zz = (bit & 0x01) == 0x00 ? -halfWidth : halfWidth;
+        return xx * s.cosYaw[slot] - zz * s.sinYaw[slot];
+    }
+
+    /**
+     * @return the y-coordinate, relative to the entity, of a bit's rest position in a slot
+     */
+    public static float restY(JigglyBitStore<?> s, int slot, int bit) {
+        return (((bit & 0x02) == 0x00) != s.upsideDown[slot]) ? 0.0F : s.profile[slot].height;
+    }
+
+    /**
+     * @return the z-coordinate, relative to the entity, of a bit's rest position in a slot
+     */
+    public static float restZ(JigglyBitStore<?> s, int slot, int bit) {
+        final float halfWidth = s.profile[slot].halfWidth;
+        final float xx = (((bit & 0x04) == 0x00) != s.upsideDown[slot]) ? -halfWidth : halfWidth;
+        final float zz = (bit & 0x01) == 0x00 ? -halfWidth : halfWidth;
+        return xx * s.sinYaw[slot] + zz * s.cosYaw[slot];
+    }
+
+    /**
+     * Applies friction due to internal forces such as compression, tension, and shearing over a step of {@code dt}
+     * seconds.
+     * <p>
+     * This is done by approximating quadratic drag between the particles of the material. True quadratic drag can be
+     * achieved by multiplying the velocity (v) by 1 - Cv, where C represents various factors. When numerically
+     * integrating though, large velocities will make that value negative, resulting in numerical instability. Here the
+     * expression e^(-Cv) is used instead as it is always positive and is tangent to 1 - Cv at v = 0.
+     * <p>
+     * Quadratic drag is used here instead of linear drag because it doesn't affect slow velocities as much as higher
+     * ones. This allows the jiggly bits to continuously move around a bit while also keeping them from flying out of
+     * control whenever the entity moves suddenly. C is tuned for steps of 0.05 s and scaled for other step lengths.
+     */
+    static void applyDrag(JigglyBitStore<?> s, int slot, float internalFriction, float dt) {
+        final float C = internalFriction * s.profile[slot].invCubeRootVolume * (dt / 0.05F);
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        for(int b = first; b < last; b++) {
+            final float speed = (float) Math.sqrt(s.velX[b] * s.velX[b] + s.velY[b] * s.velY[b] + s.velZ[b] * s.velZ[b]);
+            final float drag = (float) Math.exp(-C * speed);
+            s.velX[b] *= drag;
+            s.velY[b] *= drag;
+            s.velZ[b] *= drag;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package jigglyslimes.physics;
+
+/**
+ * Everything {@link SlimePhysics} needs to know about the slimes it simulates and the world around them. The physics
+ * core only reads the world through this interface, so it can be run against the game or against a stand-in world with
+ * no client at all. Only called from the thread that calls {@link SlimePhysics#update}.
+ * @param <T> - the type of object representing a slime
+ */
+public interface SlimeWorld<T> {
+
+    /**
+     * @return the x-coordinate of a slime's origin, at the bottom centre of its bounding box
+     */
+    double getX(T slime);
+
+    /**
+     * @return the y-coordinate of a slime's origin, at the bottom centre of its bounding box
+     */
+    double getY(T slime);
+
+    /**
+     * @return the z-coordinate of a slime's origin, at the bottom centre of its bounding box
+     */
+    double getZ(T slime);
+
+    /**
+     * @return the yaw of a slime's body, in degrees
+     */
+    float getYaw(T slime);
+
+    float getWidth(T slime);
+
+    float getHeight(T slime);
+
+    /**
+     * @return the profile matching a slime's current size. Only called when the slime's width or height no longer
+     * match the profile it was last given.
+     */
+    SlimeProfile getProfile(T slime);
+
+    /**
+     * @return whether a slime is turned upside down
+     */
+    boolean isUpsideDown(T slime);
+
+    /**
+     * @return whether gravity acts on a slime
+     */
+    boolean hasGravity(T slime);
+
+    /**
+     * @return whether the block containing a point is solid or liquid
+     */
+    boolean isSolidOrLiquid(double x, double y, double z);
+
+    /**
+     * Adds the bounding boxes of the other objects that a slime's jiggly bits could be touching.
+     * @param slime - the slime
+     * @param out - the buffer to add the boxes to; empty when passed in
+     */
+    void gatherNearbyBoxes(T slime, NearbyBoxes out);
+}
@@ -0,0 +1,37 @@
+package jigglyslimes.physics;
+
+/**
+ * Decides which slimes {@link SlimePhysics} steps each tick, and by how many ticks at once. A scheduler that only
+ * implements {@link #schedule} keeps every slime awake.
+ * @param <T> - the type of object representing a slime
+ */
+@FunctionalInterface
+public interface StepScheduler<T> {
+
+    /**
+     * @return the number of ticks to step a slime by this tick; 0 if it is not stepped this tick
+     */
+    int schedule(int slot, T slime);
+
+    /**
+     * @return whether a slime should be snapped to its rest shape before it is stepped. Clears the request.
+     */
+    default boolean consumeSnap(int slot) {
+        return false;
+    }
+
+    /**
+     * @return whether a slime that is not stepped this tick is asleep, in which case its jiggly bits follow it around
+     * instead of being jolted when it wakes
+     */
+    default boolean isAsleep(int slot) {
+        return false;
+    }
+
+    /**
+     * Called after a slime has been stepped.
+     * @param maxSpeedSq - the greatest squared speed of the slime's jiggly bits relative to the slime
+     * @param ticks - the number of ticks the slime was stepped by
+     */
+    default void afterStep(int slot, T slime, float maxSpeedSq, int ticks) {}
+}
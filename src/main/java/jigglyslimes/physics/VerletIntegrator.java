@@ -0,0 +1,63 @@
+package jigglyslimes.physics;
+
+/**
+ * Moves the bits by their velocities first, then projects them back towards satisfying each spring and their rest
+ * positions, Gauss-Seidel style. Each projection is a compliant (XPBD) constraint whose compliance is the inverse of the
+ * rigidity, so it matches the explicit springs for short steps but can never overshoot for long ones. Velocities are
+ * derived from how far the projections moved each bit, as in Verlet integration.
+ */
+final class VerletIntegrator implements Integrator {
+
+    @Override
+    public void step(JigglyBitStore<?> s, int slot, float dt, PhysicsParams params) {
+        final int first = JigglyBitStore.firstBit(slot);
+        final int last = first + JigglyBitStore.BITS_PER_SLOT;
+        final SlimeProfile profile = s.profile[slot];
+        final float rigidity = params.rigidity;
+        final float invDt = 1.0F / dt;
+
+        for(int b = first; b < last; b++) {
+            s.posX[b] += s.velX[b] * dt;
+            s.posY[b] += s.velY[b] * dt;
+            s.posZ[b] += s.velZ[b] * dt;
+        }
+
+        // Each bit has unit mass, so a spring's correction is split evenly between its two ends.
+        final float springStiffness = rigidity * dt * dt;
+        final float springScale = springStiffness / (2.0F * springStiffness + 1.0F);
+        for(int spring = 0; spring < SlimeShape.NUM_SPRINGS; spring++) {
+            final int b1 = first + SlimeShape.SPRING_A[spring];
+            final int b2 = first + SlimeShape.SPRING_B[spring];
+            final float dx = s.posX[b2] - s.posX[b1];
+            final float dy = s.posY[b2] - s.posY[b1];
+            final float dz = s.posZ[b2] - s.posZ[b1];
+            final float dist = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if(dist == 0.0F) continue;
+
+            final float scale = -(dist - SlimeShape.restLength(spring, profile)) * springScale / dist;
+            move(s, b2, dx * scale, dy * scale, dz * scale, invDt);
+            move(s, b1, -dx * scale, -dy * scale, -dz * scale, invDt);
+        }
+
+        final float restoringStiffness = SlimeShape.restoringStiffness(profile, rigidity) * dt * dt;
+        final float restoringScale = restoringStiffness / (restoringStiffness + 1.0F);
+        for(int i = 0; i < 8; i++) {
+            final int b = first + i;
+            move(s, b, (SlimeShape.restX(s, slot, i) - s.posX[b]) * restoringScale, (SlimeShape.restY(s, slot, i) - s.posY[b]) * restoringScale, (SlimeShape.restZ(s, slot, i) - s.posZ[b]) * restoringScale, invDt);
+        }
+
+        SlimeShape.applyDrag(s, slot, params.internalFriction, dt);
+    }
+
+    /**
+     * Moves a bit by a correction, changing its velocity to match.
+     */
+    private static void move(JigglyBitStore<?> s, int b, float dx, float dy, float dz, float invDt) {
+        s.posX[b] += dx;
+        s.posY[b] += dy;
+        s.posZ[b] += dz;
+        s.velX[b] += dx * invDt;
+        s.velY[b] += dy * invDt;
+        s.velZ[b] += dz * invDt;
+    }
+}